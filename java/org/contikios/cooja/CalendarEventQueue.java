@@ -0,0 +1,205 @@
+/*
+ * Copyright (c) 2026, Research Institutes of Sweden. All rights
+ * reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 1. Redistributions of source code must retain the above copyright notice,
+ * this list of conditions and the following disclaimer. 2. Redistributions in
+ * binary form must reproduce the above copyright notice, this list of
+ * conditions and the following disclaimer in the documentation and/or other
+ * materials provided with the distribution. 3. Neither the name of the
+ * Institute nor the names of its contributors may be used to endorse or promote
+ * products derived from this software without specific prior written
+ * permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE INSTITUTE AND CONTRIBUTORS ``AS IS'' AND ANY
+ * EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE INSTITUTE OR CONTRIBUTORS BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.contikios.cooja;
+
+import java.util.Arrays;
+
+/**
+ * Event queue for simulations dominated by near-future events.
+ * <p>
+ * Events that are due within {@link #BUCKETS} microseconds from the last
+ * executed event are kept in a timing wheel with one bucket per microsecond.
+ * All events in a bucket have the same execution time, and every bucket is a
+ * FIFO list so insertion order is kept as tiebreaker. Non-empty buckets are
+ * tracked in a two-level bitmap, which makes insert, reschedule and pop
+ * amortized O(1). Events further into the future are kept in an overflow heap,
+ * and the head of the wheel is compared with the head of the heap when
+ * popping, so the execution order is identical to {@link HeapEventQueue}.
+ */
+final class CalendarEventQueue extends EventQueue {
+  private static final int BUCKETS = 1 << 14;
+  private static final int MASK = BUCKETS - 1;
+
+  /** First and last slot per bucket, -1 if empty. */
+  private final int[] head = new int[BUCKETS];
+  private final int[] tail = new int[BUCKETS];
+  /** One bit per non-empty bucket, and one bit per non-zero word in occupied. */
+  private final long[] occupied = new long[BUCKETS / 64];
+  private final long[] summary = new long[BUCKETS / 64 / 64];
+
+  /** Bucket list links and bucket per slot, the bucket is -1 for slots in the overflow heap. */
+  private int[] next = new int[64];
+  private int[] prev = new int[64];
+  private int[] buckets = new int[64];
+  private int wheelSize;
+
+  private final SlotHeap overflow = new SlotHeap();
+
+  /** All events in the wheel are due in [base, base + BUCKETS). */
+  private long base;
+
+  CalendarEventQueue() {
+    Arrays.fill(head, -1);
+    Arrays.fill(tail, -1);
+  }
+
+  @Override
+  String getName() {
+    return "calendar";
+  }
+
+  @Override
+  void insert(int slot) {
+    long time = times[slot];
+    if (time < base || time - base >= BUCKETS) {
+      buckets[slot] = -1;
+      overflow.insert(slot);
+      return;
+    }
+    int bucket = (int) (time & MASK);
+    int last = tail[bucket];
+    next[slot] = -1;
+    prev[slot] = last;
+    if (last < 0) {
+      head[bucket] = slot;
+      occupied[bucket >>> 6] |= 1L << bucket;
+      summary[bucket >>> 12] |= 1L << (bucket >>> 6);
+    } else {
+      next[last] = slot;
+    }
+    tail[bucket] = slot;
+    buckets[slot] = bucket;
+    wheelSize++;
+  }
+
+  @Override
+  void update(int slot) {
+    // The new insertion order is the largest in the queue, so the slot goes last in its bucket.
+    // The time has already changed, so unlink using the stored bucket.
+    unlink(slot);
+    insert(slot);
+  }
+
+  @Override
+  void unlink(int slot) {
+    int bucket = buckets[slot];
+    if (bucket < 0) {
+      overflow.remove(slot);
+      return;
+    }
+    int p = prev[slot];
+    int n = next[slot];
+    if (p < 0) {
+      head[bucket] = n;
+    } else {
+      next[p] = n;
+    }
+    if (n < 0) {
+      tail[bucket] = p;
+    } else {
+      prev[n] = p;
+    }
+    if (head[bucket] < 0) {
+      int word = bucket >>> 6;
+      occupied[word] &= ~(1L << bucket);
+      if (occupied[word] == 0) {
+        summary[word >>> 6] &= ~(1L << word);
+      }
+    }
+    wheelSize--;
+  }
+
+  @Override
+  int peek() {
+    int first = -1;
+    if (wheelSize > 0) {
+      int start = (int) (base & MASK);
+      int bucket = nextOccupied(start);
+      if (bucket < 0) {
+        bucket = nextOccupied(0);
+      }
+      first = head[bucket];
+    }
+    int late = overflow.peek();
+    return late >= 0 && (first < 0 || before(late, first)) ? late : first;
+  }
+
+  @Override
+  int poll() {
+    int first = peek();
+    if (first < 0) {
+      return -1;
+    }
+    unlink(first);
+    // Nothing queued is due before the popped event, so the window can move.
+    base = Math.max(base, times[first]);
+    return first;
+  }
+
+  /** Returns the first non-empty bucket at or after from, or -1. */
+  private int nextOccupied(int from) {
+    int word = from >>> 6;
+    long bits = occupied[word] & (-1L << from);
+    if (bits != 0) {
+      return (word << 6) + Long.numberOfTrailingZeros(bits);
+    }
+    for (int w = word + 1; w < occupied.length; ) {
+      int s = w >>> 6;
+      long summaryBits = summary[s] & (-1L << w);
+      if (summaryBits != 0) {
+        w = (s << 6) + Long.numberOfTrailingZeros(summaryBits);
+        return (w << 6) + Long.numberOfTrailingZeros(occupied[w]);
+      }
+      w = (s + 1) << 6;
+    }
+    return -1;
+  }
+
+  @Override
+  int size() {
+    return wheelSize + overflow.size();
+  }
+
+  @Override
+  void reset() {
+    Arrays.fill(head, -1);
+    Arrays.fill(tail, -1);
+    Arrays.fill(occupied, 0);
+    Arrays.fill(summary, 0);
+    wheelSize = 0;
+    overflow.clear();
+  }
+
+  @Override
+  void grow(int capacity) {
+    next = Arrays.copyOf(next, capacity);
+    prev = Arrays.copyOf(prev, capacity);
+    buckets = Arrays.copyOf(buckets, capacity);
+    overflow.grow(capacity);
+  }
+}
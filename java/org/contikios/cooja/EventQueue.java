@@ -30,58 +30,83 @@
 
 package org.contikios.cooja;
 
-import java.util.PriorityQueue;
+import java.util.Arrays;
 import java.util.function.Predicate;
 
 /**
+ * Queue of time events, ordered by execution time and insertion order.
+ * <p>
+ * Every queued event owns a slot. Execution times and insertion orders are
+ * stored in primitive arrays indexed by slot, so scheduling and executing
+ * events does not allocate once the arrays have grown to the working set
+ * size. The event stores its slot, which lets implementations reschedule an
+ * event that is already queued without searching for it.
+ * <p>
+ * Events that are removed with {@link TimeEvent#remove()} stay queued until
+ * they are rescheduled or reach the head of the queue.
+ *
  * @author Joakim Eriksson (ported to COOJA by Fredrik Osterlind)
  */
-final class EventQueue {
+abstract class EventQueue {
+
+  /** Name of the default event queue implementation. */
+  static final String DEFAULT = "heap";
 
   private long count;
 
-  public static final class Pair implements Comparable<Pair> {
-    public final TimeEvent event;
-    public final long time;
+  /** Event, execution time and insertion order per slot. */
+  TimeEvent[] events = new TimeEvent[64];
+  long[] times = new long[64];
+  long[] orders = new long[64];
 
-    private final long uuid;
+  /** Slots not used by any queued event. */
+  private int[] freeSlots = new int[64];
+  private int freeCount;
+  private int slotCount;
 
-    Pair(TimeEvent event, long time, long uuid) {
-      this.event = event;
-      this.time = time;
-      this.uuid = uuid;
-    }
+  /** Execution time of the event last returned by popFirst. */
+  private long lastTime;
 
-    @Override
-    public int compareTo(Pair other) {
-      if (time < other.time)
-      {
-        return -1;
-      }
-      else if (time > other.time)
-      {
-        return +1;
-      }
-      else
-      {
-        // Tiebreaker, to prioritise events based on insertion order
-        if (uuid < other.uuid)
-        {
-          return -1;
-        }
-        else if (uuid > other.uuid)
-        {
-          return +1;
-        }
-        else
-        {
-          throw new RuntimeException("Bad compare");
-        }
-      }
-    }
+  /**
+   * Creates an event queue.
+   *
+   * @param type Implementation name, or null for the default
+   * @return Event queue, or null if the type is unknown
+   */
+  static EventQueue create(String type) {
+    return switch (type == null ? DEFAULT : type) {
+      case "heap" -> new HeapEventQueue();
+      case "calendar" -> new CalendarEventQueue();
+      default -> null;
+    };
   }
 
-  private final PriorityQueue<Pair> queue = new PriorityQueue<>();
+  /** Returns the implementation name. */
+  abstract String getName();
+
+  /** Inserts a slot that is not queued. */
+  abstract void insert(int slot);
+
+  /** Repositions a queued slot after its time and order changed. */
+  abstract void update(int slot);
+
+  /** Removes a queued slot. */
+  abstract void unlink(int slot);
+
+  /** Returns the first slot without removing it, or -1 if empty. */
+  abstract int peek();
+
+  /** Removes and returns the first slot, or -1 if empty. */
+  abstract int poll();
+
+  /** Returns the number of queued slots. */
+  abstract int size();
+
+  /** Removes all slots. */
+  abstract void reset();
+
+  /** Called when the per-slot arrays grow to the given capacity. */
+  abstract void grow(int capacity);
 
   /**
    * Should only be called from simulation thread!
@@ -90,86 +115,232 @@ final class EventQueue {
    * @param time Time
    */
   public void addEvent(TimeEvent event, long time) {
+    if (event.isQueued() && event.isScheduled()) {
+      throw new IllegalStateException("Event is already scheduled: " + event);
+    }
+
+    event.setScheduled(true);
+
     if (event.isQueued()) {
-      if (event.isScheduled()) {
-        throw new IllegalStateException("Event is already scheduled: " + event);
-      }
-      removeFromQueue(event);
+      // Removed but still queued event: reuse its slot.
+      int slot = event.slot;
+      times[slot] = time;
+      orders[slot] = count++;
+      update(slot);
+      return;
     }
 
+    int slot = allocateSlot();
+    events[slot] = event;
+    event.slot = slot;
+    times[slot] = time;
     // Each event is given a monotonically increasing unique id.
     // This is used in a tiebreaker in the queue, so events that are
     // inserted earlier are executed first.
-    queue.add(new Pair(event, time, count++));
+    orders[slot] = count++;
+    insert(slot);
+  }
 
-    event.setScheduled(true);
+  public void clear() {
+    for (int slot = 0; slot < slotCount; slot++) {
+      if (events[slot] != null) {
+        releaseSlot(slot);
+      }
+    }
+    reset();
   }
 
   /**
    * Should only be called from simulation thread!
    *
-   * @param event Event
-   * @return True if event was removed
+   * @return Event, or null if queue is empty
+   * @see #getLastTime()
    */
-  private boolean removeFromQueue(TimeEvent event) {
-    boolean removed = queue.removeIf((Pair p) -> p.event == event);
+  public TimeEvent popFirst() {
+    int first;
+    while ((first = poll()) >= 0) {
+      var event = events[first];
+      boolean scheduled = event.isScheduled();
+      lastTime = times[first];
 
-    assert removed == event.isQueued();
+      // No longer scheduled or queued
+      releaseSlot(first);
 
-    if (removed)
-    {
-      event.setScheduled(false);
-    }
+      if (scheduled) {
+        return event;
+      }
 
-    return removed;
+      // If not scheduled, then find the next scheduled event
+    }
+    return null;
   }
 
-  public void clear() {
-    queue.clear();
+  /**
+   * @return Execution time of the event last returned by popFirst
+   */
+  public long getLastTime() {
+    return lastTime;
   }
 
   /**
-   * Should only be called from simulation thread!
+   * Returns the execution time of the first queued event, which may be an
+   * event that has been removed but is still queued.
    *
-   * @return Event
+   * @return Execution time, or Long.MAX_VALUE if queue is empty
    */
-  public Pair popFirst() {
-    Pair tmp;
+  public long peekTime() {
+    int first = peek();
+    return first < 0 ? Long.MAX_VALUE : times[first];
+  }
 
-    while (true)
-    {
-      tmp = queue.poll();
+  public boolean isEmpty() {
+    return size() == 0;
+  }
 
-      if (tmp == null) {
-        return null;
+  public boolean removeIf(final Predicate<TimeEvent> pred) {
+    boolean removed = false;
+    for (int slot = 0; slot < slotCount; slot++) {
+      var event = events[slot];
+      if (event != null && pred.test(event)) {
+        unlink(slot);
+        releaseSlot(slot);
+        removed = true;
       }
+    }
+    return removed;
+  }
 
-      boolean scheduled = tmp.event.isScheduled();
+  /** Returns true if slot a should be executed before slot b. */
+  final boolean before(int a, int b) {
+    long ta = times[a];
+    long tb = times[b];
+    return ta < tb || (ta == tb && orders[a] < orders[b]);
+  }
 
-      // No longer scheduled or queued
-      tmp.event.setScheduled(false);
+  private int allocateSlot() {
+    if (freeCount > 0) {
+      return freeSlots[--freeCount];
+    }
+    if (slotCount == events.length) {
+      int capacity = slotCount * 2;
+      events = Arrays.copyOf(events, capacity);
+      times = Arrays.copyOf(times, capacity);
+      orders = Arrays.copyOf(orders, capacity);
+      freeSlots = Arrays.copyOf(freeSlots, capacity);
+      grow(capacity);
+    }
+    return slotCount++;
+  }
+
+  private void releaseSlot(int slot) {
+    var event = events[slot];
+    event.slot = -1;
+    event.setScheduled(false);
+    events[slot] = null;
+    freeSlots[freeCount++] = slot;
+  }
+
+  /**
+   * Binary min-heap of slots. The heap position of every slot is tracked,
+   * so a slot can be repositioned or removed in O(log n).
+   */
+  final class SlotHeap {
+    private int[] heap = new int[64];
+    private int[] positions = new int[64];
+    private int size;
+
+    int size() {
+      return size;
+    }
+
+    /** Returns the first slot without removing it, or -1 if empty. */
+    int peek() {
+      return size == 0 ? -1 : heap[0];
+    }
+
+    void insert(int slot) {
+      siftUp(size++, slot);
+    }
 
-      if (scheduled)
-      {
-        break;
+    void update(int slot) {
+      int i = positions[slot];
+      if (i > 0 && before(slot, heap[(i - 1) >>> 1])) {
+        siftUp(i, slot);
+      } else {
+        siftDown(i, slot);
       }
+    }
 
-      // If not scheduled, then find the next scheduled event
+    void remove(int slot) {
+      int i = positions[slot];
+      int last = heap[--size];
+      if (i < size) {
+        heap[i] = last;
+        positions[last] = i;
+        update(last);
+      }
     }
 
-    return tmp;
-  }
+    int poll() {
+      if (size == 0) {
+        return -1;
+      }
+      int first = heap[0];
+      int last = heap[--size];
+      if (size > 0) {
+        siftDown(0, last);
+      }
+      return first;
+    }
 
-  public boolean isEmpty() {
-    return queue.isEmpty();
-  }
+    void clear() {
+      size = 0;
+    }
 
-  public boolean removeIf(final Predicate<TimeEvent> pred) {
-    return queue.removeIf((Pair p) -> pred.test(p.event));
+    void grow(int capacity) {
+      heap = Arrays.copyOf(heap, capacity);
+      positions = Arrays.copyOf(positions, capacity);
+    }
+
+    private void siftUp(int i, int slot) {
+      while (i > 0) {
+        int parent = (i - 1) >>> 1;
+        int p = heap[parent];
+        if (!before(slot, p)) {
+          break;
+        }
+        heap[i] = p;
+        positions[p] = i;
+        i = parent;
+      }
+      heap[i] = slot;
+      positions[slot] = i;
+    }
+
+    private void siftDown(int i, int slot) {
+      int half = size >>> 1;
+      while (i < half) {
+        int child = 2 * i + 1;
+        int c = heap[child];
+        int right = child + 1;
+        if (right < size && before(heap[right], c)) {
+          child = right;
+          c = heap[child];
+        }
+        if (!before(c, slot)) {
+          break;
+        }
+        heap[i] = c;
+        positions[c] = i;
+        i = child;
+      }
+      heap[i] = slot;
+      positions[slot] = i;
+    }
   }
 
   @Override
   public String toString() {
-    return "EventQueue with " + queue.size() + " events";
+    return getName() + " event queue with " + size() + " events";
   }
 }
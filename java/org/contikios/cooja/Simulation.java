@@ -30,13 +30,16 @@ package org.contikios.cooja;
 import java.awt.Color;
 import java.beans.PropertyChangeListener;
 import java.beans.PropertyChangeSupport;
+import java.lang.management.ManagementFactory;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Random;
+import java.util.SplittableRandom;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.LinkedBlockingDeque;
+import java.util.random.RandomGenerator;
 import javax.swing.JTextArea;
 import org.contikios.cooja.Cooja.PluginConstructionException;
 import org.contikios.cooja.Cooja.SimulationCreationException;
@@ -82,6 +85,13 @@ public final class Simulation {
 
   private final LinkedBlockingDeque<Object> commandQueue = new LinkedBlockingDeque<>();
 
+  /**
+   * Set after a command is added to the command queue. Lets the running simulation
+   * thread check for commands with a plain volatile read per event instead of
+   * taking the command queue lock.
+   */
+  private volatile boolean commandsPending;
+
   private final Thread simulationThread;
 
   /* If true, run simulation at full speed */
@@ -96,6 +106,16 @@ public final class Simulation {
   private long lastStartSimulationTime;
   private long currentSimulationTime;
 
+  /** Number of executed events, and counters when the simulation was last started. */
+  private long executedEvents;
+  private long lastStartExecutedEvents;
+  private long lastStartAllocatedBytes;
+
+  /** Used to measure allocations by the simulation thread, null if not supported by the JVM. */
+  private static final com.sun.management.ThreadMXBean threadBean =
+          ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean bean
+                  && bean.isThreadAllocatedMemorySupported() ? bean : null;
+
   private String title;
 
   private final RadioMedium currentRadioMedium;
@@ -115,8 +135,14 @@ public final class Simulation {
 
   private final SafeRandom randomGenerator;
 
+  /** Random generators of motes, created on first use. */
+  private final HashMap<Mote, RandomGenerator> moteRandomGenerators = new HashMap<>();
+
+  /** Random generators of radio mediums, numbered in the order they are first used. */
+  private final HashMap<RadioMedium, RandomGenerator> radioMediumRandomGenerators = new HashMap<>();
+
   /* Event queue */
-  private final EventQueue eventQueue = new EventQueue();
+  private final EventQueue eventQueue;
 
   /** Simulation state change triggers */
   private final EventTriggers<EventTriggers.Operation, Simulation> simulationStateTriggers = new EventTriggers<>();
@@ -195,35 +221,50 @@ public final class Simulation {
     randomSeed = seed;
     randomSeedGenerated = generateSeed;
     randomGenerator = new SafeRandom(seed, this);
+    // The event queue is selected with <eventqueue> in the simulation config,
+    // or with "eventqueue=TYPE" after the simulation file on the command line.
+    var eventQueueType = cfg.opts().get("eventqueue");
+    if (eventQueueType == null && root != null) {
+      eventQueueType = root.getChild("simulation").getChildTextTrim("eventqueue");
+    }
+    eventQueue = EventQueue.create(eventQueueType);
+    if (eventQueue == null) {
+      throw new SimulationCreationException("Unknown event queue: " + eventQueueType, null);
+    }
     currentRadioMedium = ExtensionManager.createRadioMedium(cooja, this, radioMediumClass);
     maxMoteStartupDelay = Math.max(0, moteStartDelay);
     simulationThread = new Thread(() -> {
       boolean isAlive = true;
       do {
         boolean isSimulationRunning = false;
-        EventQueue.Pair nextEvent = null;
+        TimeEvent nextEvent = null;
         try {
           while (isAlive) {
-            Object cmd;
-            do {
-              cmd = isSimulationRunning ? commandQueue.poll() : commandQueue.take();
-              if (cmd instanceof Runnable r) {
-                r.run();
-              } else if (cmd instanceof Command c) {
-                isAlive = c != Command.QUIT;
-                isShutdown = !isAlive;
-                isSimulationRunning = c == Command.START;
-                setRunning(isSimulationRunning);
-              }
-            } while (cmd != null && isAlive);
+            if (!isSimulationRunning || commandsPending) {
+              // Clear before draining, commands added after this point set the flag again.
+              commandsPending = false;
+              Object cmd;
+              do {
+                cmd = isSimulationRunning ? commandQueue.poll() : commandQueue.take();
+                if (cmd instanceof Runnable r) {
+                  r.run();
+                } else if (cmd instanceof Command c) {
+                  isAlive = c != Command.QUIT;
+                  isShutdown = !isAlive;
+                  isSimulationRunning = c == Command.START;
+                  setRunning(isSimulationRunning);
+                }
+              } while (cmd != null && isAlive);
+            }
 
             if (isSimulationRunning) {
               // Handle one simulation event, and update simulation time.
               nextEvent = eventQueue.popFirst();
               assert nextEvent != null : "Ran out of events in eventQueue";
-              assert nextEvent.time >= currentSimulationTime : "Event from the past";
-              currentSimulationTime = nextEvent.time;
-              nextEvent.event.execute(currentSimulationTime);
+              assert eventQueue.getLastTime() >= currentSimulationTime : "Event from the past";
+              currentSimulationTime = eventQueue.getLastTime();
+              executedEvents++;
+              nextEvent.execute(currentSimulationTime);
             }
           }
         } catch (SimulationStop e) {
@@ -232,7 +273,7 @@ public final class Simulation {
           logger.error("Simulation stopped due to error: " + e.getMessage(), e);
           if (Cooja.isVisualized()) {
             String errorTitle = "Simulation error";
-            if (nextEvent != null && nextEvent.event instanceof MoteTimeEvent moteTimeEvent) {
+            if (nextEvent instanceof MoteTimeEvent moteTimeEvent) {
               errorTitle += ": " + moteTimeEvent.getMote();
             }
             Cooja.showErrorDialog(errorTitle, e, false);
@@ -443,6 +484,8 @@ public final class Simulation {
       // Simulation starting
       speedLimitLastRealtime = lastStartRealTime = System.currentTimeMillis();
       speedLimitLastSimtime = lastStartSimulationTime = getSimulationTimeMillis();
+      lastStartExecutedEvents = executedEvents;
+      lastStartAllocatedBytes = getAllocatedBytes();
     } else {
       // Simulation stopped
       var realTimeDuration = System.currentTimeMillis() - lastStartRealTime;
@@ -450,6 +493,14 @@ public final class Simulation {
       logger.info("Runtime: {} ms. Simulated time: {} ms. Speedup: {}",
                   realTimeDuration, simulationDuration,
                   ((double) simulationDuration / Math.max(1, realTimeDuration)));
+      var events = executedEvents - lastStartExecutedEvents;
+      var allocatedBytes = getAllocatedBytes();
+      if (allocatedBytes >= 0 && lastStartAllocatedBytes >= 0) {
+        logger.info("Events: {}. Allocated by simulation thread: {} bytes/event", events,
+                    (double) (allocatedBytes - lastStartAllocatedBytes) / Math.max(1, events));
+      } else {
+        logger.info("Events: {}", events);
+      }
     }
 
     synchronized (stateLock) {
@@ -461,6 +512,20 @@ public final class Simulation {
     simulationStateTriggers.trigger(isRunning ? EventTriggers.Operation.START : EventTriggers.Operation.STOP, this);
   }
 
+  /** Returns the number of bytes allocated by the calling thread, or -1 if not available. */
+  private static long getAllocatedBytes() {
+    return threadBean == null ? -1 : threadBean.getCurrentThreadAllocatedBytes();
+  }
+
+  /**
+   * Returns the number of events executed by the simulation thread.
+   *
+   * @return Number of executed events
+   */
+  public long getExecutedEvents() {
+    return executedEvents;
+  }
+
   /**
    * Request poll from simulation thread.
    * Poll requests are prioritized over simulation events, and are
@@ -470,10 +535,16 @@ public final class Simulation {
    */
   public void invokeSimulationThread(Runnable r) {
     if (!isShutdown) {
-      commandQueue.add(r);
+      addCommand(r);
     }
   }
 
+  /** Add a command to the command queue and notify the simulation thread. */
+  private void addCommand(Object cmd) {
+    commandQueue.add(cmd);
+    commandsPending = true;
+  }
+
   /**
    * @return True iff current thread is the simulation thread
    */
@@ -497,6 +568,40 @@ public final class Simulation {
     eventQueue.addEvent(e, time);
   }
 
+  /**
+   * Returns the time of the next queued event. Until then, only the currently
+   * executing event can change the simulation state. Pending commands are
+   * executed before the next event, so they count as an event at the current time.
+   * <p>
+   * This method may only be called from the simulation thread.
+   *
+   * @return Time of the next event, or Long.MAX_VALUE if there is none
+   */
+  public long getNextEventTime() {
+    assert isSimulationThread() : "Peeking event queue from non-simulation thread";
+    return commandsPending ? currentSimulationTime : eventQueue.peekTime();
+  }
+
+  /**
+   * Advance the simulation time from within the currently executing event,
+   * as if the event had rescheduled itself to the given time and was the next
+   * event to be executed. This is only possible if no other event is due
+   * at or before the given time, and no commands are pending.
+   * <p>
+   * This method may only be called from the simulation thread.
+   *
+   * @param time New simulation time
+   * @return True if the simulation time was advanced
+   */
+  public boolean advanceSimulationTime(long time) {
+    assert isSimulationThread() : "Advancing time from non-simulation thread";
+    if (commandsPending || time < currentSimulationTime || time >= eventQueue.peekTime()) {
+      return false;
+    }
+    currentSimulationTime = time;
+    return true;
+  }
+
   /** Create a new script engine that logs to the logTextArea and add it to the list
    *  of active script engines. */
   public LogScriptEngine newScriptEngine(JTextArea logTextArea, String nashornArgs) {
@@ -520,7 +625,7 @@ public final class Simulation {
 
   public Integer startSimulation(boolean block) {
     if (!isRunning() && !isShutdown) {
-      commandQueue.add(Command.START);
+      addCommand(Command.START);
       if (block) {
         try {
           // Wait for simulation to be shutdown
@@ -557,7 +662,7 @@ public final class Simulation {
     if (rv != null) {
       returnValue = rv;
     }
-    commandQueue.add(Cooja.isVisualized() ? Command.STOP : Command.QUIT);
+    addCommand(Cooja.isVisualized() ? Command.STOP : Command.QUIT);
     return true;
   }
 
@@ -618,10 +723,55 @@ public final class Simulation {
     return randomSeed;
   }
 
+  /**
+   * Returns the simulation-wide random generator. It may only be used from the
+   * simulation thread, and every draw changes the numbers seen by all other
+   * users. Motes and radio mediums use their own streams instead.
+   *
+   * @see #getRandomGenerator(Mote)
+   * @see #getRandomGenerator(RadioMedium)
+   * @return Random generator
+   */
   public Random getRandomGenerator() {
     return randomGenerator;
   }
 
+  /**
+   * Returns the random generator of a mote.
+   * <p>
+   * Every mote has its own stream, derived from the random seed and the mote ID
+   * when the stream is first used. Draws from one mote do not affect the numbers
+   * seen by other motes. Should only be called from the simulation thread,
+   * after the mote ID has been set.
+   *
+   * @param mote Mote
+   * @return Random generator
+   */
+  public RandomGenerator getRandomGenerator(Mote mote) {
+    return moteRandomGenerators.computeIfAbsent(mote, m -> createRandomGenerator(m.getID()));
+  }
+
+  /**
+   * Returns the random generator of a radio medium, which is independent of
+   * the random generators of the motes.
+   * <p>
+   * Every radio medium, including one used inside another medium, has its own
+   * stream. The streams are numbered in the order the mediums first ask for
+   * them, which is fixed by the order the mediums are constructed in.
+   *
+   * @param medium Radio medium
+   * @return Random generator
+   */
+  public RandomGenerator getRandomGenerator(RadioMedium medium) {
+    return radioMediumRandomGenerators.computeIfAbsent(medium,
+            m -> createRandomGenerator(-1 - radioMediumRandomGenerators.size()));
+  }
+
+  private RandomGenerator createRandomGenerator(long stream) {
+    // Scramble the stream number into the seed, so streams of consecutive mote IDs are unrelated.
+    return new SplittableRandom(new SplittableRandom(randomSeed ^ stream * 0x9E3779B97F4A7C15L).nextLong());
+  }
+
   public SimEventCentral getEventCentral() {
     return eventCentral;
   }
@@ -657,6 +807,13 @@ public final class Simulation {
     element.setText(Long.toString(maxMoteStartupDelay));
     config.add(element);
 
+    // Event queue
+    if (!EventQueue.DEFAULT.equals(eventQueue.getName())) {
+      element = new Element("eventqueue");
+      element.setText(eventQueue.getName());
+      config.add(element);
+    }
+
     // Radio Medium
     element = new Element("radiomedium");
     element.setText(currentRadioMedium.getClass().getName());
@@ -776,6 +933,7 @@ public final class Simulation {
       moteTriggers.trigger(AddRemove.REMOVE, mote);
       eventCentral.removeMote(mote);
     }
+    moteRandomGenerators.remove(mote);
     // Delete all events associated with deleted mote.
     eventQueue.removeIf(ev -> ev instanceof MoteTimeEvent moteTimeEvent && moteTimeEvent.getMote() == mote);
     for (var p : startedPlugins.toArray(new Plugin[0])) {
@@ -797,7 +955,7 @@ public final class Simulation {
       Cooja.removePlugin(startedPlugins, startedPlugin);
     }
     if (!isShutdown) {
-      commandQueue.add(Command.QUIT);
+      addCommand(Command.QUIT);
     }
   }
 
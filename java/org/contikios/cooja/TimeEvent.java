@@ -35,7 +35,9 @@ package org.contikios.cooja;
  */
 public abstract class TimeEvent {
 
-  private boolean isQueued;
+  /** Event queue slot, or -1 if not queued. Maintained by EventQueue. */
+  int slot = -1;
+
   private boolean isScheduled;
 
   public TimeEvent() {
@@ -46,12 +48,11 @@ public abstract class TimeEvent {
   }
 
   public boolean isQueued() {
-    return isQueued;
+    return slot >= 0;
   }
 
-  public void setScheduled(boolean queued) {
-    isScheduled = queued;
-    isQueued = queued;
+  public void setScheduled(boolean scheduled) {
+    isScheduled = scheduled;
   }
 
   public void remove() {
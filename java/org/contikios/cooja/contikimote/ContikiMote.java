@@ -37,6 +37,7 @@ import org.contikios.cooja.interfaces.PolledAfterActiveTicks;
 import org.contikios.cooja.interfaces.PolledAfterAllTicks;
 import org.contikios.cooja.interfaces.PolledBeforeActiveTicks;
 import org.contikios.cooja.interfaces.PolledBeforeAllTicks;
+import org.contikios.cooja.mote.memory.ArrayMemory;
 import org.contikios.cooja.mote.memory.SectionMoteMemory;
 import org.contikios.cooja.motes.AbstractWakeupMote;
 
@@ -52,6 +53,9 @@ import org.contikios.cooja.motes.AbstractWakeupMote;
  * When ticked a Contiki mote polls all interfaces, copies the mote
  * memory to the core, lets the Contiki system handle one event,
  * fetches the updated memory and finally polls all interfaces again.
+ * <p>
+ * If the mote type has private library instances available, the mote
+ * instead runs directly on the memory of its own library instance.
  *
  * @author      Fredrik Osterlind
  */
@@ -60,17 +64,30 @@ public class ContikiMote extends AbstractWakeupMote<ContikiMoteType, SectionMote
   private final ArrayList<PolledAfterActiveTicks> polledAfterActive = new ArrayList<>();
   private final ArrayList<PolledBeforeAllTicks> polledBeforePassive = new ArrayList<>();
   private final ArrayList<PolledAfterAllTicks> polledAfterPassive = new ArrayList<>();
+  /** Private library instance, or null if the library of the mote type is shared. */
+  private final CoreInstance core;
+  /** Watched variables of each interface in polledAfterActive, null if polled after every tick. */
+  private final ArrayList<WatchedRange[]> watchedAfterActive = new ArrayList<>();
+  private final ArrayMemory[] versionedSections;
+  /** Memory version when the watched variables were last checked. */
+  private long watchedVersion;
+
+  private record WatchedRange(ArrayMemory section, int offset, int size) {}
 
   /**
    * Creates a new mote of given type.
    * Both the initial mote memory and the interface handler
    * are supplied from the mote type.
    *
+   * The caller releases the library instance if the constructor throws.
+   *
    * @param moteType Mote type
+   * @param core Private library instance, or null to share the library of the mote type
    * @param sim Mote's simulation
    */
-  ContikiMote(ContikiMoteType moteType, Simulation sim) throws MoteType.MoteTypeCreationException {
-    super(moteType, moteType.createInitialMemory(), sim);
+  ContikiMote(ContikiMoteType moteType, CoreInstance core, Simulation sim) throws MoteType.MoteTypeCreationException {
+    super(moteType, core == null ? moteType.createInitialMemory() : core.createMemory(), sim);
+    this.core = core;
     moteInterfaces.init(this);
     for (var intf : moteInterfaces.getInterfaces()) {
       if (intf instanceof PolledBeforeActiveTicks intf2) {
@@ -86,9 +103,76 @@ public class ContikiMote extends AbstractWakeupMote<ContikiMoteType, SectionMote
         polledAfterPassive.add(intf2);
       }
     }
+    versionedSections = moteMemory.getSections().values().stream()
+            .filter(ArrayMemory.class::isInstance).toArray(ArrayMemory[]::new);
+    for (var intf : polledAfterActive) {
+      watchedAfterActive.add(findWatchedRanges(intf.getWatchedVariables()));
+    }
+    watchedVersion = getMemoryVersion();
     requestImmediateWakeup();
   }
 
+  private WatchedRange[] findWatchedRanges(String[] variables) {
+    if (variables == null) {
+      return null;
+    }
+    var ranges = new WatchedRange[variables.length];
+    for (int i = 0; i < variables.length; i++) {
+      var symbol = moteMemory.getSymbolMap().get(variables[i]);
+      if (symbol == null) {
+        return null;
+      }
+      int size = Math.max(symbol.size, 1);
+      for (var section : versionedSections) {
+        if (symbol.addr >= section.getStartAddr()
+                && symbol.addr + size <= section.getStartAddr() + section.getTotalSize()) {
+          ranges[i] = new WatchedRange(section, (int) (symbol.addr - section.getStartAddr()), size);
+        }
+      }
+      if (ranges[i] == null) {
+        // Not in versioned memory, poll after every tick.
+        return null;
+      }
+    }
+    return ranges;
+  }
+
+  private long getMemoryVersion() {
+    long version = 0;
+    for (var section : versionedSections) {
+      version = Math.max(version, section.getVersion());
+    }
+    return version;
+  }
+
+  /**
+   * Returns a bitmask of the interfaces in polledAfterActive to poll after
+   * this tick: interfaces without watched variables, and interfaces with
+   * watched variables in memory pages that changed since the last check.
+   */
+  private long getDirtyInterfaces() {
+    long dirty = 0;
+    long version = getMemoryVersion();
+    for (int i = 0; i < watchedAfterActive.size() && i < Long.SIZE; i++) {
+      var ranges = watchedAfterActive.get(i);
+      if (ranges == null) {
+        dirty |= 1L << i;
+        continue;
+      }
+      if (version == watchedVersion) {
+        continue;
+      }
+      for (var range : ranges) {
+        if (range.section.isChangedSince(range.offset, range.size, watchedVersion)) {
+          dirty |= 1L << i;
+          break;
+        }
+      }
+    }
+    watchedVersion = version;
+    return dirty;
+  }
+
   /**
    * Ticks mote once. This is done by first polling all interfaces
    * and letting them act on the stored memory before the memory is set. Then
@@ -117,24 +201,40 @@ public class ContikiMote extends AbstractWakeupMote<ContikiMoteType, SectionMote
       return;
     }
 
-    /* Copy mote memory to Contiki */
-    ContikiMoteType.setCoreMemory(moteMemory);
+    if (core != null) {
+      /* Handle a single Contiki event directly in the private library */
+      core.tick();
+    } else {
+      /* Copy mote memory to Contiki */
+      moteType.setCoreMemory(moteMemory);
 
-    /* Handle a single Contiki events */
-    moteType.tick();
+      /* Handle a single Contiki events */
+      moteType.tick();
 
-    /* Copy mote memory from Contiki */
-    ContikiMoteType.getCoreMemory(moteMemory);
+      /* Copy mote memory from Contiki */
+      moteType.getCoreMemory(moteMemory);
+    }
 
     moteMemory.pollForMemoryChanges();
-    for (var moteInterface : polledAfterActive) {
-      moteInterface.doActionsAfterTick();
+    long dirty = getDirtyInterfaces();
+    for (int i = 0; i < polledAfterActive.size(); i++) {
+      if (i >= Long.SIZE || (dirty & 1L << i) != 0) {
+        polledAfterActive.get(i).doActionsAfterTick();
+      }
     }
     for (var moteInterface : polledAfterPassive) {
       moteInterface.doActionsAfterTick();
     }
   }
 
+  @Override
+  public void removed() {
+    super.removed();
+    if (core != null) {
+      moteType.releaseCoreInstance(core);
+    }
+  }
+
   @Override
   public String toString() {
     return "Contiki " + getID();
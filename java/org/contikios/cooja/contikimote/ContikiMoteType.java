@@ -35,6 +35,7 @@ import java.io.File;
 import java.io.IOException;
 import java.lang.foreign.Arena;
 import java.lang.foreign.MemorySegment;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
@@ -173,6 +174,22 @@ public class ContikiMoteType extends BaseContikiMoteType {
   // Initial memory for all motes of this type
   private SectionMoteMemory initialMemory;
 
+  /** Memory sections of the Contiki system, and the page versions they currently hold. */
+  private String[] coreSections;
+  private MemorySegment[] coreSegments;
+  private long[][] coreVersions;
+
+  private long lastSwapBytes;
+  private long totalSwapBytes;
+  private long swapCount;
+
+  /** Maximum number of private library instances, 0 if disabled. */
+  private int maxCoreInstances;
+  private boolean queryContiki;
+  private final ArrayList<CoreInstance> coreInstances = new ArrayList<>();
+  /** Unused private library instances, least recently released first. */
+  private final ArrayDeque<CoreInstance> freeCoreInstances = new ArrayDeque<>();
+
   /**
    * Creates a new uninitialized Cooja mote type. This mote type needs to load
    * a library file and parse a map file before it can be used.
@@ -204,7 +221,15 @@ public class ContikiMoteType extends BaseContikiMoteType {
 
   @Override
   public Mote generateMote(Simulation simulation) throws MoteTypeCreationException {
-    return new ContikiMote(this, simulation);
+    var core = allocateCoreInstance();
+    try {
+      return new ContikiMote(this, core, simulation);
+    } catch (MoteTypeCreationException | RuntimeException e) {
+      if (core != null) {
+        releaseCoreInstance(core);
+      }
+      throw e;
+    }
   }
 
   @Override
@@ -263,6 +288,8 @@ public class ContikiMoteType extends BaseContikiMoteType {
      * or output of command specified in external tools settings (e.g. nm -a )
      */
     boolean useCommand = Boolean.parseBoolean(Cooja.getExternalToolsSetting("PARSE_WITH_COMMAND", "false"));
+    queryContiki = useCommand;
+    maxCoreInstances = Integer.parseInt(Cooja.getExternalToolsSetting("CONTIKI_CORE_INSTANCES", "0"));
     // Allocate core communicator class
     final var firmwareFile = getContikiFirmwareFile();
     myCoreComm = new CoreComm(arena, firmwareFile, useCommand);
@@ -319,6 +346,15 @@ public class ContikiMoteType extends BaseContikiMoteType {
       initialMemory.addMemorySection("common",
               getMemory(myCoreComm.getCommonStartAddress(), myCoreComm.getCommonSize(), offsetVariables));
     }
+    var sections = initialMemory.getSections();
+    coreSections = sections.keySet().toArray(new String[0]);
+    coreSegments = new MemorySegment[coreSections.length];
+    coreVersions = new long[coreSections.length][];
+    for (int i = 0; i < coreSections.length; i++) {
+      var sec = (ArrayMemory) sections.get(coreSections[i]);
+      coreSegments[i] = MemorySegment.ofAddress(sec.getStartAddr()).reinterpret(sec.getTotalSize());
+      coreVersions[i] = sec.getPageVersions();
+    }
     getCoreMemory(initialMemory);
     return true;
   }
@@ -432,31 +468,82 @@ public class ContikiMoteType extends BaseContikiMoteType {
     return initialMemory.clone();
   }
 
+  /**
+   * Returns a private library instance for a new mote, so the mote can run
+   * directly on the native memory. Released instances are reused before
+   * new ones are loaded, up to the configured maximum.
+   *
+   * @return Library instance, or null if the mote should share the library of
+   * this mote type and swap memory
+   */
+  CoreInstance allocateCoreInstance() throws MoteTypeCreationException {
+    var core = freeCoreInstances.pollFirst();
+    if (core != null) {
+      core.reset();
+      return core;
+    }
+    if (coreInstances.size() >= maxCoreInstances) {
+      return null;
+    }
+    core = new CoreInstance(getContikiFirmwareFile(), queryContiki, initialMemory);
+    coreInstances.add(core);
+    return core;
+  }
+
+  /**
+   * Returns a library instance to the pool when its mote is removed.
+   *
+   * @param core Library instance
+   */
+  void releaseCoreInstance(CoreInstance core) {
+    freeCoreInstances.addLast(core);
+  }
+
   /**
    * Copy core memory to given memory. This should not be used directly, but
    * instead via ContikiMote.getMemory().
+   * Only the pages changed by the Contiki system are copied.
    *
    * @param mem
    *          Memory to set
    */
-  static void getCoreMemory(SectionMoteMemory mem) {
-    for (var sec : mem.getSections().values()) {
-      MemorySegment.ofArray(sec.getMemory())
-              .copyFrom(MemorySegment.ofAddress(sec.getStartAddr()).reinterpret(sec.getTotalSize()));
+  void getCoreMemory(SectionMoteMemory mem) {
+    for (int i = 0; i < coreSections.length; i++) {
+      var sec = (ArrayMemory) mem.getSection(coreSections[i]);
+      lastSwapBytes += sec.copyChangedPagesFrom(coreSegments[i], coreVersions[i]);
     }
+    totalSwapBytes += lastSwapBytes;
+    swapCount++;
   }
 
   /**
    * Copy given memory to the Contiki system.
+   * Only the pages that differ from the memory currently in the Contiki
+   * system are copied.
    *
    * @param mem
    * New memory
    */
-  static void setCoreMemory(SectionMoteMemory mem) {
-    for (var sec : mem.getSections().values()) {
-      MemorySegment.ofAddress(sec.getStartAddr()).reinterpret(sec.getTotalSize())
-              .copyFrom(MemorySegment.ofArray(sec.getMemory()));
-   }
+  void setCoreMemory(SectionMoteMemory mem) {
+    lastSwapBytes = 0;
+    for (int i = 0; i < coreSections.length; i++) {
+      var sec = (ArrayMemory) mem.getSection(coreSections[i]);
+      lastSwapBytes += sec.copyChangedPagesTo(coreSegments[i], coreVersions[i]);
+    }
+  }
+
+  /**
+   * @return Number of bytes copied to and from the Contiki system in the last tick
+   */
+  public long getLastSwapBytes() {
+    return lastSwapBytes;
+  }
+
+  /**
+   * @return Average number of bytes copied to and from the Contiki system per tick
+   */
+  public double getAverageSwapBytes() {
+    return swapCount == 0 ? 0 : (double) totalSwapBytes / swapCount;
   }
 
   /**
@@ -586,6 +673,15 @@ public class ContikiMoteType extends BaseContikiMoteType {
 
   @Override
   public void removed() {
+    if (swapCount > 0) {
+      logger.info(getIdentifier() + ": copied " + totalSwapBytes + " bytes of mote memory in " + swapCount
+              + " ticks (" + String.format("%.1f", getAverageSwapBytes()) + " bytes per tick)");
+    }
+    for (var core : coreInstances) {
+      core.close();
+    }
+    coreInstances.clear();
+    freeCoreInstances.clear();
     arena.close();
   }
 }
@@ -0,0 +1,153 @@
+/*
+ * Copyright (c) 2026, Research Institutes of Sweden. All rights
+ * reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 1. Redistributions of source code must retain the above copyright notice,
+ * this list of conditions and the following disclaimer. 2. Redistributions in
+ * binary form must reproduce the above copyright notice, this list of
+ * conditions and the following disclaimer in the documentation and/or other
+ * materials provided with the distribution. 3. Neither the name of the
+ * Institute nor the names of its contributors may be used to endorse or promote
+ * products derived from this software without specific prior written
+ * permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE INSTITUTE AND CONTRIBUTORS ``AS IS'' AND ANY
+ * EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE INSTITUTE OR CONTRIBUTORS BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.contikios.cooja.contikimote;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.foreign.Arena;
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.ValueLayout;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.HashMap;
+import java.util.Map;
+import org.contikios.cooja.MoteType.MoteTypeCreationException;
+import org.contikios.cooja.mote.memory.MemoryInterface.Symbol;
+import org.contikios.cooja.mote.memory.MemoryLayout;
+import org.contikios.cooja.mote.memory.NativeMemory;
+import org.contikios.cooja.mote.memory.SectionMoteMemory;
+
+/**
+ * A private copy of a mote type's library, so a single mote can run directly
+ * on the native memory without copying it in and out on every tick.
+ * <p>
+ * The library file is copied to a temporary file before loading, since
+ * loading the same file again would return the already loaded library.
+ */
+class CoreInstance {
+  private final Arena arena = Arena.ofShared();
+  private final CoreComm coreComm;
+  private final Map<String, Symbol> symbols;
+
+  private final String[] sectionNames;
+  private final long[] sectionAddresses;
+  private final MemorySegment[] segments;
+  private final byte[][] initialData;
+
+  /**
+   * Loads a copy of the library file.
+   *
+   * @param libFile Library file
+   * @param queryContiki Call helper functions in Contiki-NG (macOS)
+   * @param initialMemory Initial memory of the mote type, with the sections to use
+   */
+  CoreInstance(File libFile, boolean queryContiki, SectionMoteMemory initialMemory) throws MoteTypeCreationException {
+    Path copy = null;
+    try {
+      copy = Files.createTempFile(libFile.getName() + "-", ".cooja");
+      Files.copy(libFile.toPath(), copy, StandardCopyOption.REPLACE_EXISTING);
+      coreComm = new CoreComm(arena, copy.toFile(), queryContiki);
+    } catch (IOException | RuntimeException e) {
+      arena.close();
+      throw new MoteTypeCreationException("Error loading library copy: " + e.getMessage(), e);
+    } finally {
+      if (copy != null) {
+        // The loaded library stays mapped after the file is deleted.
+        copy.toFile().delete();
+      }
+    }
+
+    try {
+      // The copy is loaded at another address than the library of the mote type,
+      // so offset the symbols the same way the mote type offsets them.
+      long offset = coreComm.getReferenceAddress() - initialMemory.getSymbolMap().get("referenceVar").addr;
+      symbols = new HashMap<>();
+      for (var entry : initialMemory.getSymbolMap().entrySet()) {
+        var old = entry.getValue();
+        symbols.put(entry.getKey(), new Symbol(old.type, old.name, old.addr + offset, old.size));
+      }
+      var sections = initialMemory.getSections();
+      sectionNames = sections.keySet().toArray(new String[0]);
+      sectionAddresses = new long[sectionNames.length];
+      segments = new MemorySegment[sectionNames.length];
+      initialData = new byte[sectionNames.length][];
+      for (int i = 0; i < sectionNames.length; i++) {
+        var sec = sections.get(sectionNames[i]);
+        long start = switch (sectionNames[i]) {
+          case "data" -> coreComm.getDataStartAddress();
+          case "bss" -> coreComm.getBssStartAddress();
+          case "common" -> coreComm.getCommonStartAddress();
+          default -> throw new MoteTypeCreationException("Unknown memory section: " + sectionNames[i]);
+        };
+        sectionAddresses[i] = start;
+        segments[i] = MemorySegment.ofAddress(start).reinterpret(sec.getTotalSize());
+        initialData[i] = segments[i].toArray(ValueLayout.JAVA_BYTE);
+      }
+    } catch (MoteTypeCreationException | RuntimeException e) {
+      arena.close();
+      throw e;
+    }
+  }
+
+  /**
+   * Creates a mote memory that accesses the native memory of this instance
+   * at its own addresses, so pointers stored in the memory can be followed.
+   */
+  SectionMoteMemory createMemory() {
+    var mem = new SectionMoteMemory(symbols);
+    for (int i = 0; i < sectionNames.length; i++) {
+      mem.addMemorySection(sectionNames[i],
+              new NativeMemory(sectionAddresses[i], MemoryLayout.getNative(), segments[i], symbols));
+    }
+    return mem;
+  }
+
+  /**
+   * Restores the memory to the state just after the init function was run.
+   */
+  void reset() {
+    for (int i = 0; i < segments.length; i++) {
+      MemorySegment.copy(initialData[i], 0, segments[i], ValueLayout.JAVA_BYTE, 0, initialData[i].length);
+    }
+  }
+
+  /**
+   * Ticks the mote once.
+   */
+  void tick() {
+    coreComm.tick();
+  }
+
+  /**
+   * Unloads the library.
+   */
+  void close() {
+    arena.close();
+  }
+}
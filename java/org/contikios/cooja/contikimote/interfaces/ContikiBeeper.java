@@ -81,6 +81,11 @@ public class ContikiBeeper implements Beeper, PolledAfterActiveTicks {
     return moteMem.getByteValueOf("simBeeped") == 1;
   }
 
+  @Override
+  public String[] getWatchedVariables() {
+    return new String[] { "simBeeped" };
+  }
+
   @Override
   public void doActionsAfterTick() {
     if (moteMem.getByteValueOf("simBeeped") == 1) {
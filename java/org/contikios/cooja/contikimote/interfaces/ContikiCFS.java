@@ -90,6 +90,11 @@ public class ContikiCFS implements MoteInterface, PolledAfterActiveTicks {
     this.moteMem = new VarMemory(mote.getMemory());
   }
 
+  @Override
+  public String[] getWatchedVariables() {
+    return new String[] { "simCFSChanged" };
+  }
+
   @Override
   public void doActionsAfterTick() {
     if (moteMem.getByteValueOf("simCFSChanged") == 1) {
@@ -100,6 +100,11 @@ public class ContikiEEPROM implements MoteInterface, PolledAfterActiveTicks {
     this.moteMem = new VarMemory(mote.getMemory());
   }
 
+  @Override
+  public String[] getWatchedVariables() {
+    return new String[] { "simEEPROMChanged" };
+  }
+
   @Override
   public void doActionsAfterTick() {
     if (moteMem.getByteValueOf("simEEPROMChanged") == 1) {
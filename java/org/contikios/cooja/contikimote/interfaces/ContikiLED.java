@@ -104,6 +104,11 @@ public class ContikiLED extends LED implements PolledAfterActiveTicks {
     return (currentLedValue & LEDS_RED) > 0;
   }
 
+  @Override
+  public String[] getWatchedVariables() {
+    return new String[] { "simLedsValue" };
+  }
+
   @Override
   public void doActionsAfterTick() {
     boolean ledChanged;
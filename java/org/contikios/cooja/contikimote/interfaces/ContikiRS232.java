@@ -83,6 +83,11 @@ public class ContikiRS232 extends SerialUI implements PolledAfterActiveTicks {
     this.moteMem = new VarMemory(mote.getMemory());
   }
 
+  @Override
+  public String[] getWatchedVariables() {
+    return new String[] { "simLoggedFlag" };
+  }
+
   @Override
   public void doActionsAfterTick() {
     if (moteMem.getByteValueOf("simLoggedFlag") == 1) {
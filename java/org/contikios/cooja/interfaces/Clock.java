@@ -58,9 +58,11 @@ import org.jdom2.Element;
 public abstract class Clock implements MoteInterface {
 
   protected final Simulation simulation;
+  private final Mote mote;
 
   protected Clock(Mote mote) {
     this.simulation = mote.getSimulation();
+    this.mote = mote;
   }
 
   /**
@@ -189,7 +191,7 @@ public abstract class Clock implements MoteInterface {
   @Override
   public void added() {
     var maxMoteStartupDelay = simulation.getMaxMoteStartupDelay();
-    var delay = maxMoteStartupDelay > 0 ? simulation.getRandomGenerator().nextInt((int)maxMoteStartupDelay) : 0;
+    var delay = maxMoteStartupDelay > 0 ? simulation.getRandomGenerator(mote).nextInt((int)maxMoteStartupDelay) : 0;
     setDrift(-simulation.getSimulationTime() - delay);
   }
 }
@@ -41,4 +41,14 @@ import org.contikios.cooja.contikimote.interfaces.ContikiRS232;
  */
 public interface PolledAfterActiveTicks {
   void doActionsAfterTick();
+
+  /**
+   * Returns the mote memory variables that this interface reacts to. The
+   * interface may then only be polled after ticks that changed one of them.
+   *
+   * @return Variable names, or null to be polled after every tick
+   */
+  default String[] getWatchedVariables() {
+    return null;
+  }
 }
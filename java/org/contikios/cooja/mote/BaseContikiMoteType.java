@@ -358,8 +358,31 @@ public abstract class BaseContikiMoteType extends AbstractApplicationMoteType {
       // Handle multiple compilation commands one by one.
       final var output = MessageContainer.createMessageList(vis);
       final var env = getCompilationEnvironment();
-      for (String cmd : StringUtils.splitOnNewline(getCompileCommands())) {
-        compile(cmd, env, fileSource.getParentFile(), null, null, output, true);
+      final var commands = StringUtils.splitOnNewline(getCompileCommands());
+      final var cache = fileSource == null || fileFirmware == null ? null : BuildCache.create();
+      String key = null;
+      if (cache != null) {
+        var inputs = new ArrayList<>(commands);
+        inputs.add(getMoteType());
+        inputs.add(fileFirmware.getAbsolutePath());
+        inputs.add(Cooja.getExternalToolsSetting("PATH_MAKE"));
+        for (var moteInterfaceClass : moteInterfaceClasses) {
+          inputs.add(moteInterfaceClass.getName());
+        }
+        var contiki = Cooja.getExternalToolsSetting("PATH_CONTIKI");
+        key = BuildCache.getKey(inputs, env, fileSource.getAbsoluteFile().getParentFile(),
+                contiki == null ? null : new File(contiki).getAbsoluteFile(), fileFirmware);
+        if (key == null) {
+          logger.info("Build cache not used for {}: source or Contiki-NG is not in a git repository", fileSource.getName());
+        }
+      }
+      if (key == null || !cache.restore(key, fileFirmware)) {
+        for (String cmd : commands) {
+          compile(cmd, env, fileSource.getParentFile(), null, null, output, true);
+        }
+        if (key != null) {
+          cache.store(key, fileFirmware);
+        }
       }
     }
     return loadMoteFirmware(vis);
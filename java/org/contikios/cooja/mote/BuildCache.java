@@ -0,0 +1,329 @@
+/*
+ * Copyright (c) 2026, Research Institutes of Sweden. All rights
+ * reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 1. Redistributions of source code must retain the above copyright notice,
+ * this list of conditions and the following disclaimer. 2. Redistributions in
+ * binary form must reproduce the above copyright notice, this list of
+ * conditions and the following disclaimer in the documentation and/or other
+ * materials provided with the distribution. 3. Neither the name of the
+ * Institute nor the names of its contributors may be used to endorse or promote
+ * products derived from this software without specific prior written
+ * permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE INSTITUTE AND CONTRIBUTORS ``AS IS'' AND ANY
+ * EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE INSTITUTE OR CONTRIBUTORS BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.contikios.cooja.mote;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HexFormat;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import org.contikios.cooja.Cooja;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A local cache of compiled firmware files.
+ * <p>
+ * Firmware is stored under a hash of the compile commands, the compilation
+ * environment, the git state of Contiki-NG and of the repository with the
+ * source file, and all files under the source directory. The git state is
+ * the revision, the uncommitted changes and the untracked files that are not
+ * ignored. Loading a simulation can then reuse the firmware instead of
+ * running make again. The cache is enabled by setting BUILD_CACHE_DIR, and
+ * entries are evicted by age and total size.
+ */
+final class BuildCache {
+  private static final Logger logger = LoggerFactory.getLogger(BuildCache.class);
+
+  private static int hits;
+  private static int misses;
+
+  private final Path dir;
+  private final long maxSize;
+  private final long maxAge;
+
+  private BuildCache(Path dir, long maxSize, long maxAge) {
+    this.dir = dir;
+    this.maxSize = maxSize;
+    this.maxAge = maxAge;
+  }
+
+  /**
+   * Returns the build cache, or null if it is not enabled.
+   */
+  static BuildCache create() {
+    var dir = Cooja.getExternalToolsSetting("BUILD_CACHE_DIR", "");
+    if (dir.isEmpty()) {
+      return null;
+    }
+    long maxSize = Long.parseLong(Cooja.getExternalToolsSetting("BUILD_CACHE_MAX_SIZE_MB", "1024")) << 20;
+    long maxAge = TimeUnit.DAYS.toMillis(Long.parseLong(Cooja.getExternalToolsSetting("BUILD_CACHE_MAX_AGE_DAYS", "30")));
+    return new BuildCache(Path.of(Cooja.resolvePathIdentifiers(dir)), maxSize, maxAge);
+  }
+
+  /* Inherited environment variables that make or the Contiki-NG build system read */
+  private static final Set<String> BUILD_VARIABLES = Set.of("PATH", "CONTIKI", "TARGET", "BOARD",
+          "CC", "CXX", "LD", "AS", "AR", "OBJCOPY", "CFLAGS", "CPPFLAGS", "CXXFLAGS", "LDFLAGS", "ASFLAGS",
+          "DEFINES", "WERROR", "RELSTR", "CI", "COOJA_CI", "GNUMAKEFLAGS");
+
+  /**
+   * Computes the cache key for a firmware build.
+   *
+   * @param inputs Compile commands and other settings that affect the build
+   * @param env Compilation environment, or null if the build inherits the environment of Cooja
+   * @param sourceDir Directory of the source file
+   * @param contikiDir Contiki-NG directory, may be null
+   * @param firmware Firmware file, which is not an input even if it is in the source directory
+   * @return Key, or null if the source directory or Contiki-NG is not in a git repository
+   */
+  static String getKey(List<String> inputs, Map<String, String> env, File sourceDir, File contikiDir, File firmware) {
+    if (contikiDir == null) {
+      return null;
+    }
+    MessageDigest digest;
+    try {
+      digest = MessageDigest.getInstance("SHA-256");
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException("SHA-256 not available", e);
+    }
+    for (var input : inputs) {
+      update(digest, input);
+    }
+    if (env == null) {
+      env = new TreeMap<>();
+      for (var entry : System.getenv().entrySet()) {
+        var name = entry.getKey();
+        if (BUILD_VARIABLES.contains(name) || name.startsWith("MAKE") || name.startsWith("CONTIKI_")) {
+          env.put(name, entry.getValue());
+        }
+      }
+    }
+    for (var entry : env.entrySet()) {
+      update(digest, entry.getKey() + "=" + entry.getValue());
+    }
+    // Contiki-NG and the application are often in the same repository.
+    var repositories = new LinkedHashSet<Path>();
+    for (var dir : List.of(contikiDir, sourceDir)) {
+      var root = runGit(dir, "rev-parse", "--show-toplevel");
+      if (root == null) {
+        return null;
+      }
+      repositories.add(Path.of(new String(root, UTF_8).strip()));
+    }
+    var ignored = firmware.getName();
+    try {
+      for (var root : repositories) {
+        if (!updateRepository(digest, root, ignored)) {
+          return null;
+        }
+      }
+      var source = sourceDir.toPath();
+      var files = new ArrayList<Path>();
+      Files.walkFileTree(source, new SimpleFileVisitor<>() {
+        @Override
+        public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) {
+          return dir.equals(source) || !isBuildOutput(source.relativize(dir), ignored)
+                  ? FileVisitResult.CONTINUE : FileVisitResult.SKIP_SUBTREE;
+        }
+
+        @Override
+        public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+          if (attrs.isRegularFile() && !isBuildOutput(source.relativize(file), ignored)) {
+            files.add(source.relativize(file));
+          }
+          return FileVisitResult.CONTINUE;
+        }
+      });
+      files.sort(null);
+      for (var file : files) {
+        update(digest, file.toString());
+        digest.update(Files.readAllBytes(source.resolve(file)));
+      }
+    } catch (IOException e) {
+      logger.warn("Build cache: failed to read {}: {}", sourceDir, e.getMessage());
+      return null;
+    }
+    return HexFormat.of().formatHex(digest.digest());
+  }
+
+  /**
+   * Adds the revision, the uncommitted changes and the untracked files of a
+   * git repository to the digest.
+   */
+  private static boolean updateRepository(MessageDigest digest, Path root, String ignored) throws IOException {
+    var dir = root.toFile();
+    var revision = runGit(dir, "rev-parse", "HEAD");
+    var diff = runGit(dir, "diff", "--no-ext-diff", "--binary", "HEAD");
+    var untracked = runGit(dir, "ls-files", "-z", "--others", "--exclude-standard");
+    if (revision == null || diff == null || untracked == null) {
+      return false;
+    }
+    update(digest, root.toString());
+    digest.update(revision);
+    digest.update(diff);
+    for (var name : new String(untracked, UTF_8).split("\0")) {
+      var path = root.resolve(name);
+      if (name.isEmpty() || isBuildOutput(Path.of(name), ignored) || !Files.isRegularFile(path)) {
+        continue;
+      }
+      update(digest, name);
+      digest.update(Files.readAllBytes(path));
+    }
+    return true;
+  }
+
+  /**
+   * Returns true for files written by the build: files in build and obj_*
+   * directories, and copies of the firmware. Hidden files are skipped too.
+   */
+  private static boolean isBuildOutput(Path relative, String firmware) {
+    for (var name : relative) {
+      var s = name.toString();
+      if (s.equals("build") || s.startsWith("obj_") || s.startsWith(".")) {
+        return true;
+      }
+    }
+    return relative.getFileName() != null && relative.getFileName().toString().equals(firmware);
+  }
+
+  private static void update(MessageDigest digest, String s) {
+    digest.update(s.getBytes(UTF_8));
+    digest.update((byte) 0);
+  }
+
+  private static byte[] runGit(File dir, String... args) {
+    var command = new ArrayList<String>();
+    command.add("git");
+    command.addAll(List.of(args));
+    try {
+      var process = new ProcessBuilder(command).directory(dir)
+              .redirectError(ProcessBuilder.Redirect.DISCARD).start();
+      byte[] output;
+      try (var input = process.getInputStream()) {
+        output = input.readAllBytes();
+      }
+      return process.waitFor() == 0 ? output : null;
+    } catch (IOException e) {
+      return null;
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      return null;
+    }
+  }
+
+  private Path getEntry(String key, File firmware) {
+    var name = firmware.getName();
+    int dot = name.lastIndexOf('.');
+    return dir.resolve(dot < 0 ? key : key + name.substring(dot));
+  }
+
+  /**
+   * Copies the cached firmware for the key to the firmware file.
+   *
+   * @return True if the firmware was found in the cache
+   */
+  boolean restore(String key, File firmware) {
+    var entry = getEntry(key, firmware);
+    boolean hit = false;
+    if (Files.isRegularFile(entry)) {
+      try {
+        Files.createDirectories(firmware.getAbsoluteFile().getParentFile().toPath());
+        Files.copy(entry, firmware.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        Files.setLastModifiedTime(entry, FileTime.fromMillis(System.currentTimeMillis()));
+        hit = true;
+      } catch (IOException e) {
+        logger.warn("Build cache: failed to restore {}: {}", firmware, e.getMessage());
+      }
+    }
+    synchronized (BuildCache.class) {
+      if (hit) {
+        hits++;
+      } else {
+        misses++;
+      }
+      logger.info("Build cache {} for {} ({} hits, {} misses)", hit ? "hit" : "miss", firmware.getName(), hits, misses);
+    }
+    return hit;
+  }
+
+  /**
+   * Stores the firmware file in the cache and evicts old entries.
+   */
+  void store(String key, File firmware) {
+    try {
+      Files.createDirectories(dir);
+      var tmp = Files.createTempFile(dir, key, ".tmp");
+      Files.copy(firmware.toPath(), tmp, StandardCopyOption.REPLACE_EXISTING);
+      Files.move(tmp, getEntry(key, firmware), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    } catch (IOException e) {
+      logger.warn("Build cache: failed to store {}: {}", firmware, e.getMessage());
+      return;
+    }
+    evict();
+  }
+
+  private record Entry(Path path, long lastModified, long size) {}
+
+  private void evict() {
+    var entries = new ArrayList<Entry>();
+    try (var files = Files.list(dir)) {
+      for (var path : (Iterable<Path>) files::iterator) {
+        if (Files.isRegularFile(path) && !path.getFileName().toString().endsWith(".tmp")) {
+          entries.add(new Entry(path, Files.getLastModifiedTime(path).toMillis(), Files.size(path)));
+        }
+      }
+    } catch (IOException e) {
+      logger.warn("Build cache: failed to list {}: {}", dir, e.getMessage());
+      return;
+    }
+    entries.sort(Comparator.comparingLong(Entry::lastModified));
+    long total = 0;
+    for (var entry : entries) {
+      total += entry.size();
+    }
+    long oldest = System.currentTimeMillis() - maxAge;
+    for (var entry : entries) {
+      if (entry.lastModified() >= oldest && total <= maxSize) {
+        break;
+      }
+      try {
+        Files.deleteIfExists(entry.path());
+        total -= entry.size();
+      } catch (IOException e) {
+        logger.warn("Build cache: failed to delete {}: {}", entry.path(), e.getMessage());
+      }
+    }
+  }
+}
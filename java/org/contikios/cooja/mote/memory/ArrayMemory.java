@@ -29,28 +29,64 @@
 
 package org.contikios.cooja.mote.memory;
 
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.ValueLayout;
 import java.util.Arrays;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * A memory that is backed by an array.
+ * <p>
+ * The memory is divided into pages with version stamps that change on every
+ * write, and pages with the same stamp have the same content. This allows
+ * copying only the changed pages to and from another memory.
  *
  * @author Enrico Joerns
  */
 public class ArrayMemory implements MemoryInterface {
 
+  /** Size of the pages that are tracked for changes. */
+  public static final int PAGE_SIZE = 256;
+
+  private static final AtomicLong nextVersion = new AtomicLong(1);
+
   private final byte[] memory;
   private final long startAddress;
   private final MemoryLayout layout;
   private final Map<String, Symbol> symbols;// XXX Allow to set symbols
+  private final long[] pageVersions;
+  /** The highest page version. */
+  private long version;
 
   public ArrayMemory(long address, MemoryLayout layout, byte[] memory, Map<String, Symbol> symbols) {
     this.startAddress = address;
     this.layout = layout;
     this.memory = memory;
     this.symbols = symbols;
+    pageVersions = new long[(memory.length + PAGE_SIZE - 1) / PAGE_SIZE];
+    version = nextVersion.getAndIncrement();
+    Arrays.fill(pageVersions, version);
+  }
+
+  private ArrayMemory(ArrayMemory other) {
+    this.startAddress = other.startAddress;
+    this.layout = other.layout;
+    this.memory = other.memory.clone();
+    this.symbols = other.symbols;
+    this.pageVersions = other.pageVersions.clone();
+    this.version = other.version;
   }
 
+  /** Returns a copy of this memory with the same page versions. */
+  public ArrayMemory copy() {
+    return new ArrayMemory(this);
+  }
+
+  /**
+   * The memory array. Writes directly to the array must be followed by
+   * {@link #markChanged(int, int)}.
+   */
   @Override
   public byte[] getMemory() {
     return memory;
@@ -73,11 +109,98 @@ public class ArrayMemory implements MemoryInterface {
   @Override
   public void setMemorySegment(long addr, byte[] data) throws MoteMemoryException {
     System.arraycopy(data, 0, memory, (int) (addr - startAddress), data.length);
+    markChanged((int) (addr - startAddress), data.length);
   }
 
   @Override
   public void clearMemory() {
     Arrays.fill(memory, (byte) 0x00);
+    markChanged(0, memory.length);
+  }
+
+  /** Gives the pages in the range of the array a new version. */
+  public void markChanged(int offset, int length) {
+    if (length > 0) {
+      version = nextVersion.getAndIncrement();
+      Arrays.fill(pageVersions, offset / PAGE_SIZE, (offset + length - 1) / PAGE_SIZE + 1, version);
+    }
+  }
+
+  /**
+   * Returns the version of the last change. Versions increase, so the memory
+   * has changed since a previous call if the version is different.
+   */
+  public long getVersion() {
+    return version;
+  }
+
+  /**
+   * Checks if any page in the range of the array has changed after the given version.
+   */
+  public boolean isChangedSince(int offset, int length, long sinceVersion) {
+    for (int page = offset / PAGE_SIZE, last = (offset + length - 1) / PAGE_SIZE; page <= last; page++) {
+      if (pageVersions[page] > sinceVersion) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Copies the pages whose version differs from the target versions to the
+   * target, and updates the target versions.
+   *
+   * @return Number of bytes copied
+   */
+  public int copyChangedPagesTo(MemorySegment target, long[] targetVersions) {
+    int copied = 0;
+    for (int page = 0; page < pageVersions.length; page++) {
+      if (targetVersions[page] != pageVersions[page]) {
+        /* copy all adjacent changed pages at once */
+        int first = page;
+        do {
+          targetVersions[page] = pageVersions[page];
+          page++;
+        } while (page < pageVersions.length && targetVersions[page] != pageVersions[page]);
+        int offset = first * PAGE_SIZE;
+        int length = Math.min(page * PAGE_SIZE, memory.length) - offset;
+        MemorySegment.copy(memory, offset, target, ValueLayout.JAVA_BYTE, offset, length);
+        copied += length;
+      }
+    }
+    return copied;
+  }
+
+  /**
+   * Copies the pages that differ in the source to this memory. The changed
+   * pages get new versions, which are also stored in the source versions.
+   *
+   * @return Number of bytes copied
+   */
+  public int copyChangedPagesFrom(MemorySegment source, long[] sourceVersions) {
+    MemorySegment array = MemorySegment.ofArray(memory);
+    int copied = 0;
+    long offset = 0;
+    while (offset < memory.length) {
+      long mismatch = MemorySegment.mismatch(source, offset, memory.length, array, offset, memory.length);
+      if (mismatch < 0) {
+        break;
+      }
+      int page = (int) ((offset + mismatch) / PAGE_SIZE);
+      int start = page * PAGE_SIZE;
+      int length = Math.min(PAGE_SIZE, memory.length - start);
+      MemorySegment.copy(source, start, array, start, length);
+      version = nextVersion.getAndIncrement();
+      pageVersions[page] = sourceVersions[page] = version;
+      copied += length;
+      offset = start + length;
+    }
+    return copied;
+  }
+
+  /** Returns the current page versions, to track the content of a copy. */
+  public long[] getPageVersions() {
+    return pageVersions.clone();
   }
 
   @Override
@@ -0,0 +1,115 @@
+/*
+ * Copyright (c) 2026, Research Institutes of Sweden. All rights
+ * reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 1. Redistributions of source code must retain the above copyright notice,
+ * this list of conditions and the following disclaimer. 2. Redistributions in
+ * binary form must reproduce the above copyright notice, this list of
+ * conditions and the following disclaimer in the documentation and/or other
+ * materials provided with the distribution. 3. Neither the name of the
+ * Institute nor the names of its contributors may be used to endorse or promote
+ * products derived from this software without specific prior written
+ * permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE INSTITUTE AND CONTRIBUTORS ``AS IS'' AND ANY
+ * EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE INSTITUTE OR CONTRIBUTORS BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.contikios.cooja.mote.memory;
+
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.ValueLayout;
+import java.util.Map;
+
+/**
+ * A memory that is backed by native memory, for example the memory of a
+ * loaded library. Addresses are translated from the start address to the
+ * start of the segment.
+ */
+public class NativeMemory implements MemoryInterface {
+  private final MemorySegment segment;
+  private final long startAddress;
+  private final MemoryLayout layout;
+  private final Map<String, Symbol> symbols;
+
+  public NativeMemory(long address, MemoryLayout layout, MemorySegment segment, Map<String, Symbol> symbols) {
+    this.startAddress = address;
+    this.layout = layout;
+    this.segment = segment;
+    this.symbols = symbols;
+  }
+
+  /** Returns the native memory. */
+  public MemorySegment getSegment() {
+    return segment;
+  }
+
+  /** Returns a copy of the memory. */
+  @Override
+  public byte[] getMemory() {
+    return segment.toArray(ValueLayout.JAVA_BYTE);
+  }
+
+  @Override
+  public byte[] getMemorySegment(long addr, int size) throws MoteMemoryException {
+    byte[] ret = new byte[size];
+    MemorySegment.copy(segment, ValueLayout.JAVA_BYTE, addr - startAddress, ret, 0, size);
+    return ret;
+  }
+
+  @Override
+  public void setMemorySegment(long addr, byte[] data) throws MoteMemoryException {
+    MemorySegment.copy(data, 0, segment, ValueLayout.JAVA_BYTE, addr - startAddress, data.length);
+  }
+
+  @Override
+  public void clearMemory() {
+    segment.fill((byte) 0x00);
+  }
+
+  @Override
+  public long getStartAddr() {
+    return startAddress;
+  }
+
+  @Override
+  public int getTotalSize() {
+    return (int) segment.byteSize();
+  }
+
+  @Override
+  public Map<String, Symbol> getSymbolMap() {
+    return symbols;
+  }
+
+  @Override
+  public MemoryLayout getLayout() {
+    return layout;
+  }
+
+  /**
+   * Not supported: the native code writes the memory directly. Segments are
+   * monitored by polling the {@link SectionMoteMemory} that contains this memory.
+   *
+   * @return false
+   */
+  @Override
+  public boolean addSegmentMonitor(SegmentMonitor.EventType flag, long address, int size, SegmentMonitor monitor) {
+    return false;
+  }
+
+  @Override
+  public boolean removeSegmentMonitor(long address, int size, SegmentMonitor monitor) {
+    return false;
+  }
+}
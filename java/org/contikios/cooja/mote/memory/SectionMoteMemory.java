@@ -28,7 +28,7 @@
 
 package org.contikios.cooja.mote.memory;
 
-import java.util.ArrayList;
+import java.lang.foreign.MemorySegment;
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Map;
@@ -221,19 +221,29 @@ public class SectionMoteMemory implements MemoryInterface {
 
   @Override
   public boolean addSegmentMonitor(SegmentMonitor.EventType flag, long address, int size, SegmentMonitor monitor) {
-    PolledMemorySegments t = new PolledMemorySegments(monitor, address, size);
-    polledMemories.add(t);
+    var section = findSection(address, size);
+    PolledSection polled = null;
+    for (var p : polledSections) {
+      if (p.section == section) {
+        polled = p;
+        break;
+      }
+    }
+    if (polled == null) {
+      polled = new PolledSection(section);
+      polledSections = Arrays.copyOf(polledSections, polledSections.length + 1);
+      polledSections[polledSections.length - 1] = polled;
+    }
+    polled.add(new PolledMemorySegments(monitor, address, size, section));
     return true;
   }
 
   @Override
   public boolean removeSegmentMonitor(long address, int size, SegmentMonitor monitor) {
-    for (PolledMemorySegments mcm: polledMemories) {
-      if (mcm.mm != monitor || mcm.address != address || mcm.size != size) {
-        continue;
+    for (var polled : polledSections) {
+      if (polled.remove(monitor, address, size)) {
+        return true;
       }
-      polledMemories.remove(mcm);
-      return true;
     }
     return false;
   }
@@ -247,19 +257,91 @@ public class SectionMoteMemory implements MemoryInterface {
     SectionMoteMemory clone = new SectionMoteMemory(symbols);
 
     for (Map.Entry<String, MemoryInterface> entry : sections.entrySet()) {
-      // Copy section memory to new ArrayMemory
+      // Copy section memory to new ArrayMemory, keeping page versions of array sections
       MemoryInterface section = entry.getValue();
-      MemoryInterface cpmem = new ArrayMemory(section.getStartAddr(), section.getLayout(), section.getMemory().clone(), section.getSymbolMap());
+      MemoryInterface cpmem = section instanceof ArrayMemory arrayMemory ? arrayMemory.copy()
+              : new ArrayMemory(section.getStartAddr(), section.getLayout(), section.getMemory().clone(), section.getSymbolMap());
       clone.addMemorySection(entry.getKey(), cpmem);
     }
 
     return clone;
   }
 
-  private final ArrayList<PolledMemorySegments> polledMemories = new ArrayList<>();
+  /* Replaced when monitors are added or removed, so polling can iterate without copying. */
+  private PolledSection[] polledSections = new PolledSection[0];
+
+  /**
+   * Notifies the segment monitors of segments that changed since the last poll.
+   * Sections backed by an {@link ArrayMemory} are skipped if their version is unchanged.
+   */
   public void pollForMemoryChanges() {
-    for (PolledMemorySegments mem: polledMemories.toArray(new PolledMemorySegments[0])) {
-      mem.notifyIfChanged();
+    for (var polled : polledSections) {
+      polled.notifyIfChanged();
+    }
+  }
+
+  private MemoryInterface findSection(long address, int size) {
+    for (MemoryInterface section : sections.values()) {
+      final var secStart = section.getStartAddr();
+      if (address >= secStart && address + size <= secStart + section.getTotalSize()) {
+        return section;
+      }
+    }
+    throw new MoteMemoryException(
+            "Getting memory segment [0x%x,0x%x] failed: No section available",
+            address, address + size - 1);
+  }
+
+  private static class PolledSection {
+    final MemoryInterface section;
+    final ArrayMemory arrayMemory;
+    private PolledMemorySegments[] segments = new PolledMemorySegments[0];
+    private long version;
+
+    PolledSection(MemoryInterface section) {
+      this.section = section;
+      arrayMemory = section instanceof ArrayMemory mem ? mem : null;
+      version = arrayMemory == null ? 0 : arrayMemory.getVersion();
+    }
+
+    void add(PolledMemorySegments polled) {
+      segments = Arrays.copyOf(segments, segments.length + 1);
+      segments[segments.length - 1] = polled;
+    }
+
+    boolean remove(SegmentMonitor mm, long address, int size) {
+      for (int i = 0; i < segments.length; i++) {
+        var mcm = segments[i];
+        if (mcm.mm != mm || mcm.address != address || mcm.size != size) {
+          continue;
+        }
+        var newSegments = new PolledMemorySegments[segments.length - 1];
+        System.arraycopy(segments, 0, newSegments, 0, i);
+        System.arraycopy(segments, i + 1, newSegments, i, newSegments.length - i);
+        segments = newSegments;
+        return true;
+      }
+      return false;
+    }
+
+    void notifyIfChanged() {
+      if (arrayMemory == null) {
+        for (var polled : segments) {
+          polled.notifyIfChanged();
+        }
+        return;
+      }
+      long newVersion = arrayMemory.getVersion();
+      if (newVersion == version) {
+        return;
+      }
+      long oldVersion = version;
+      version = newVersion;
+      for (var polled : segments) {
+        if (arrayMemory.isChangedSince(polled.offset, polled.size, oldVersion)) {
+          polled.notifyIfChanged();
+        }
+      }
     }
   }
 
@@ -267,24 +349,42 @@ public class SectionMoteMemory implements MemoryInterface {
     final SegmentMonitor mm;
     final long address;
     final int size;
-    private byte[] oldMem;
+    final int offset;
+    /* The monitored range of the section, or null if the section is not array or native backed. */
+    private final MemorySegment current;
+    private final byte[] oldMem;
+    private final MemorySegment old;
 
-    PolledMemorySegments(SegmentMonitor mm, long address, int size) {
+    PolledMemorySegments(SegmentMonitor mm, long address, int size, MemoryInterface section) {
       this.mm = mm;
       this.address = address;
       this.size = size;
-      
-      oldMem = getMemorySegment(address, size);
+      offset = (int) (address - section.getStartAddr());
+      MemorySegment sectionSegment = null;
+      if (section instanceof ArrayMemory mem) {
+        sectionSegment = MemorySegment.ofArray(mem.getMemory());
+      } else if (section instanceof NativeMemory mem) {
+        sectionSegment = mem.getSegment();
+      }
+      current = sectionSegment == null ? null : sectionSegment.asSlice(offset, size);
+      oldMem = section.getMemorySegment(address, size);
+      old = MemorySegment.ofArray(oldMem);
     }
 
     private void notifyIfChanged() {
-      byte[] newMem = getMemorySegment(address, size);
-      if (Arrays.equals(oldMem, newMem)) {
-        return;
+      if (current == null) {
+        byte[] newMem = getMemorySegment(address, size);
+        if (Arrays.equals(oldMem, newMem)) {
+          return;
+        }
+        System.arraycopy(newMem, 0, oldMem, 0, size);
+      } else {
+        if (current.mismatch(old) < 0) {
+          return;
+        }
+        old.copyFrom(current);
       }
-      
       mm.memoryChanged(SectionMoteMemory.this, SegmentMonitor.EventType.WRITE, address);
-      oldMem = newMem;
     }
   }
 
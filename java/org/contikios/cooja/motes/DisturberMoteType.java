@@ -32,7 +32,6 @@
 package org.contikios.cooja.motes;
 
 import java.awt.Container;
-import java.util.Random;
 import org.contikios.cooja.AbstractionLevelDescription;
 import org.contikios.cooja.COOJARadioPacket;
 import org.contikios.cooja.ClassDescription;
@@ -96,7 +95,7 @@ public class DisturberMoteType extends AbstractApplicationMoteType {
 
     /* Schedule next (potential) transmission of dummy packet */
     private void scheduleNext(RadioPacket p) {
-      Random rd = getSimulation().getRandomGenerator();
+      var rd = getSimulation().getRandomGenerator(this);
       long delay = avgDelay / 2 + (long)(rd.nextDouble() * avgDelay);
       getSimulation().scheduleEvent(new MoteTimeEvent(this) {
           @Override
@@ -32,7 +32,11 @@ package org.contikios.cooja.mspmote;
 
 import java.awt.Component;
 import java.io.File;
+import java.io.IOException;
 import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.function.LongSupplier;
 import org.contikios.cooja.ContikiError;
 import org.contikios.cooja.Cooja;
 import org.contikios.cooja.MoteType;
@@ -46,24 +50,30 @@ import org.contikios.cooja.mspmote.plugins.MspBreakpoint;
 import org.contikios.cooja.plugins.Visualizer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import se.sics.mspsim.cli.BasicCommand;
 import se.sics.mspsim.cli.CommandContext;
 import se.sics.mspsim.cli.CommandHandler;
 import se.sics.mspsim.cli.LineListener;
 import se.sics.mspsim.cli.LineOutputStream;
+import se.sics.mspsim.core.DecodeCache;
 import se.sics.mspsim.core.EmulationException;
 import se.sics.mspsim.core.EmulationLogger.WarningType;
 import se.sics.mspsim.core.LogListener;
 import se.sics.mspsim.core.Loggable;
 import se.sics.mspsim.core.MSP430;
 import se.sics.mspsim.platform.GenericNode;
-import se.sics.mspsim.profiler.SimpleProfiler;
+import se.sics.mspsim.profiler.FunctionProfiler;
+import se.sics.mspsim.profiler.PCHistogram;
+import se.sics.mspsim.profiler.PCSampler;
 import se.sics.mspsim.ui.ManagedWindow;
 import se.sics.mspsim.ui.WindowManager;
 import se.sics.mspsim.util.ComponentRegistry;
 import se.sics.mspsim.util.ConfigManager;
 import se.sics.mspsim.util.DebugInfo;
 import se.sics.mspsim.util.ELF;
+import se.sics.mspsim.util.InstructionTraceWriter;
 import se.sics.mspsim.util.MapEntry;
+import se.sics.mspsim.util.MapTable;
 
 /**
  * @author Fredrik Osterlind
@@ -73,6 +83,10 @@ public abstract class MspMote extends AbstractEmulatedMote<MspMoteType, MSP430,
 
   private final static int EXECUTE_DURATION_US = 1; /* We always execute in 1 us steps */
 
+  /** Maximum time executed without returning to the simulation event queue. */
+  private final long maxQuantum = Math.max(EXECUTE_DURATION_US,
+          Long.parseLong(Cooja.getExternalToolsSetting("MSPSIM_MAX_QUANTUM_US", "1000")));
+
   static {
     if (Cooja.isVisualized()) {
       Visualizer.registerVisualizerSkin(CodeVisualizerSkin.class);
@@ -85,13 +99,59 @@ public abstract class MspMote extends AbstractEmulatedMote<MspMoteType, MSP430,
   /* Stack monitoring variables */
   private boolean stopNextInstruction;
 
+  /** Cycles between PC samples, or 0 to not sample the PC. */
+  private final long pcSampleCycles = Long.parseLong(Cooja.getExternalToolsSetting("MSPSIM_PC_SAMPLE_CYCLES", "0"));
+  private PCSampler pcSampler;
+
+  /** Directory for streamed instruction traces, or empty to not trace. */
+  private final String traceDirectory = Cooja.getExternalToolsSetting("MSPSIM_TRACE_DIR", "");
+  private InstructionTraceWriter traceWriter;
+
+  /** Collect code coverage, written per mote type when the simulation ends. */
+  private final boolean coverage = Boolean.parseBoolean(Cooja.getExternalToolsSetting("MSPSIM_COVERAGE", "false"));
+
   public MspMote(MspMoteType moteType, Simulation sim, GenericNode node) throws MoteType.MoteTypeCreationException {
     super(moteType, node.getCPU(), new MspMoteMemory(moteType.getEntries(node), node.getCPU()), sim);
     registry = node.getRegistry();
     node.setCommandHandler(commandHandler);
     node.setup(new ConfigManager());
-    myCpu.setMonitorExec(true);
+    /* Execution counts disable busy-wait skipping, only collect them for coverage */
+    myCpu.setMonitorExec(coverage);
     myCpu.setTrace(0); /* TODO Enable */
+    /* OFF, ON, or VERIFY to check cached decoding against uncached */
+    var decodeCacheMode = Cooja.getExternalToolsSetting("MSPSIM_DECODE_CACHE", "ON");
+    try {
+      myCpu.setDecodeCacheMode(DecodeCache.Mode.valueOf(decodeCacheMode.trim().toUpperCase()));
+    } catch (IllegalArgumentException e) {
+      logger.warn("Unknown MSPSIM_DECODE_CACHE mode '{}', using ON", decodeCacheMode);
+      myCpu.setDecodeCacheMode(DecodeCache.Mode.ON);
+    }
+    myCpu.setBusyWaitSkip(Boolean.parseBoolean(Cooja.getExternalToolsSetting("MSPSIM_SKIP_BUSY_WAIT", "true")));
+    /* SIMPLE, or FUNCTION for the array based profiler with folded stacks */
+    if ("FUNCTION".equalsIgnoreCase(Cooja.getExternalToolsSetting("MSPSIM_PROFILER", "SIMPLE"))) {
+      myCpu.setProfiler(new FunctionProfiler());
+    }
+    commandHandler.registerCommand("typeprofile", new BasicCommand(
+        "show profile of all motes of this type", "[-folded|-samples]") {
+      @Override
+      public int executeCommand(CommandContext context) {
+        String option = context.getArgumentCount() > 0 ? context.getArgument(0) : "";
+        FunctionProfiler profiler = moteType.getFunctionProfile(simulation);
+        if ("-folded".equals(option)) {
+          profiler.printFoldedStacks(context.out);
+        } else if ("-samples".equals(option)) {
+          PCHistogram histogram = moteType.getPCHistogram(simulation);
+          if (histogram == null) {
+            context.err.println("No PC samples, set MSPSIM_PC_SAMPLE_CYCLES to enable sampling.");
+            return 1;
+          }
+          histogram.printHistogram(context.out);
+        } else {
+          profiler.printProfile(context.out);
+        }
+        return 0;
+      }
+    });
     myCpu.getLogger().addLogListener(new LogListener() {
       private static final Logger mlogger = LoggerFactory.getLogger("MSPSim");
       @Override
@@ -107,6 +167,11 @@ public abstract class MspMote extends AbstractEmulatedMote<MspMoteType, MSP430,
     // Throw exceptions at bad memory access.
     //myCpu.setThrowIfWarning(true);
     myCpu.reset();
+    MapTable map = registry.getComponent(MapTable.class);
+    if (pcSampleCycles > 0 && map != null) {
+      pcSampler = new PCSampler(myCpu, map, true);
+      pcSampler.start(pcSampleCycles);
+    }
     registry.removeComponent("windowManager");
     registry.registerComponent("windowManager", new WindowManager() {
       @Override
@@ -176,6 +241,47 @@ public abstract class MspMote extends AbstractEmulatedMote<MspMoteType, MSP430,
     getCPU().stop();
   }
 
+  /** Returns the PC sampler, or null if the PC is not sampled. */
+  public PCSampler getPCSampler() {
+    return pcSampler;
+  }
+
+  @Override
+  public void added() {
+    super.added();
+    if (!traceDirectory.isEmpty()) {
+      var file = Path.of(Cooja.configuration.logDir()).resolve(traceDirectory).resolve("mote" + getID() + ".trace");
+      try {
+        Files.createDirectories(file.getParent());
+        traceWriter = new InstructionTraceWriter(file);
+        myCpu.setTraceWriter(traceWriter);
+      } catch (IOException e) {
+        logger.error("Failed to open instruction trace {}", file, e);
+      }
+    }
+  }
+
+  @Override
+  public void removed() {
+    super.removed();
+    if (traceWriter != null) {
+      myCpu.setTraceWriter(null);
+      try {
+        traceWriter.close();
+      } catch (IOException e) {
+        logger.error("Failed to write instruction trace of mote {}", getID(), e);
+      }
+      traceWriter = null;
+    }
+    if (pcSampler != null) {
+      pcSampler.stop();
+      moteType.addPCSamples(pcSampler.getHistogram());
+    }
+    if (coverage) {
+      moteType.addCoverage(myCpu);
+    }
+  }
+
   public CommandHandler getCLICommandHandler() {
     return commandHandler;
   }
@@ -215,8 +321,19 @@ public abstract class MspMote extends AbstractEmulatedMote<MspMoteType, MSP430,
       lastExecute = t;
     }
     assert t >= lastExecute : "Bad event ordering: " + lastExecute + " < " + t;
-    long nextExecute = driftExecute(clock.getDeviation(), t, duration);
+    long limit = t + maxQuantum;
+    long nextExecute = driftExecute(clock.getDeviation(), t, duration, limit);
     lastExecute = t;
+    if (duration > 0) {
+      // Continue executing in 1 us steps for as long as no other event is due, instead of
+      // a round trip through the event queue per step. Other motes and interfaces only see
+      // simulation times they would have seen with rescheduling.
+      while (nextExecute < limit && !stopNextInstruction && simulation.advanceSimulationTime(nextExecute)) {
+        t = nextExecute;
+        nextExecute = driftExecute(clock.getDeviation(), t, duration, limit);
+        lastExecute = t;
+      }
+    }
     // Schedule wakeup.
     assert nextExecute >= t : t + ": MSPSim requested early wakeup: " + nextExecute;
     scheduleNextWakeup(nextExecute);
@@ -229,7 +346,13 @@ public abstract class MspMote extends AbstractEmulatedMote<MspMoteType, MSP430,
     // TODO: Reimplement stack monitoring using MSPSim internals.
   }
 
-  private long driftExecute(double deviation, long t, int duration) {
+  /* Time from the start of the current step until the quantum ends or the next event is due.
+     MSPSim queries it during the step, so events scheduled by the step itself are seen. */
+  private long quietStart;
+  private long quietLimit;
+  private final LongSupplier quietMicros = () -> Math.min(quietLimit, simulation.getNextEventTime()) - quietStart;
+
+  private long driftExecute(double deviation, long t, int duration, long limit) {
     long jump = Math.max(0, t - lastExecute);
     if (deviation != 1.0) {
       double exactJump = jump * deviation;
@@ -241,11 +364,15 @@ public abstract class MspMote extends AbstractEmulatedMote<MspMoteType, MSP430,
         jumpError -= 1.0;
       }
     }
+    // Nothing else can access the mote before the quantum ends or the next event is due,
+    // so MSPSim may fast-forward busy-wait loops until then. This needs 1:1 time steps.
+    quietStart = t;
+    quietLimit = limit;
     /* Execute MSPSim-based mote */
     /* TODO Try-catch overhead */
     long executeDelta;
     try {
-      executeDelta = myCpu.stepMicros(jump, duration) + duration;
+      executeDelta = myCpu.stepMicros(jump, duration, duration > 0 && deviation == 1.0 ? quietMicros : null) + duration;
     } catch (EmulationException e) {
       throw new ContikiError(e.getMessage(), getStackTrace(), e);
     }
@@ -303,24 +430,19 @@ public abstract class MspMote extends AbstractEmulatedMote<MspMoteType, MSP430,
       di = elf.getDebugInfo(pc + 1);
     }
     if (di == null) {
-      /* Return PC value */
-      SimpleProfiler sp = (SimpleProfiler)myCpu.getProfiler();
-      try {
-        MapEntry mapEntry = sp.getCallMapEntry(0);
-        if (mapEntry != null) {
-          String file = mapEntry.getFile();
-          if (file != null) {
-            if (file.indexOf('/') >= 0) {
-              file = file.substring(file.lastIndexOf('/')+1);
-            }
+      /* Return the function containing the PC, or the PC value */
+      MapEntry mapEntry = elf.getMap().getFunctionIndex().getFunctionAt(pc);
+      if (mapEntry != null) {
+        String file = mapEntry.getFile();
+        if (file != null) {
+          if (file.indexOf('/') >= 0) {
+            file = file.substring(file.lastIndexOf('/')+1);
           }
-          String name = mapEntry.getName();
-          return file + ":?:" + name;
         }
-        return String.format("*%02x", pc);
-      } catch (Exception e) {
-        return null;
+        String name = mapEntry.getName();
+        return file + ":?:" + name;
       }
+      return String.format("*%02x", pc);
     }
 
     int lineNo = di.getLine();
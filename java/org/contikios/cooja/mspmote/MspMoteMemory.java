@@ -61,35 +61,33 @@ public class MspMoteMemory implements MemoryInterface {
     throw new UnsupportedOperationException("Not supported yet."); //To change body of generated methods, choose Tools | Templates.
   }
 
+  /* The IO units keep their registers in ioMemory, below MAX_MEM_IO. Only the
+   * low byte of each register is visible, as when they shared the memory array. */
   @Override
   public byte[] getMemorySegment(long address, int size) {
-    int[] memInts = new int[size];
-
-    System.arraycopy(cpu.memory, (int) address, memInts, 0, size);
-
-    /* Convert to byte array */
     byte[] memBytes = new byte[size];
-    for (int i = 0; i < size; i++) {
-      memBytes[i] = (byte) memInts[i];
+    int io = (int) Math.max(0, Math.min(size, cpu.MAX_MEM_IO - address));
+    for (int i = 0; i < io; i++) {
+      memBytes[i] = (byte) cpu.ioMemory[(int) address + i];
     }
-
+    System.arraycopy(cpu.memory, (int) address + io, memBytes, io, size - io);
     return memBytes;
   }
 
   @Override
   public void setMemorySegment(long address, byte[] data) {
-    /* Convert to int array */
-    int[] memInts = new int[data.length];
-    for (int i = 0; i < data.length; i++) {
-      memInts[i] = data[i];
+    int io = (int) Math.max(0, Math.min(data.length, cpu.MAX_MEM_IO - address));
+    for (int i = 0; i < io; i++) {
+      cpu.ioMemory[(int) address + i] = data[i] & 0xff;
     }
-
-    System.arraycopy(memInts, 0, cpu.memory, (int) address, data.length);
+    System.arraycopy(data, io, cpu.memory, (int) address + io, data.length - io);
+    cpu.invalidateDecodeCache((int) address, (int) address + data.length);
   }
 
   @Override
   public void clearMemory() {
-    Arrays.fill(cpu.memory, 0);
+    Arrays.fill(cpu.memory, (byte) 0);
+    cpu.getDecodeCache().clear();
   }
 
   @Override
@@ -32,11 +32,18 @@ package org.contikios.cooja.mspmote;
 import java.awt.EventQueue;
 import java.io.File;
 import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.function.Consumer;
 import org.contikios.cooja.ClassDescription;
 import org.contikios.cooja.Cooja;
+import org.contikios.cooja.Mote;
 import org.contikios.cooja.Simulation;
 import org.contikios.cooja.dialogs.AbstractCompileDialog;
 import org.contikios.cooja.mote.BaseContikiMoteType;
@@ -44,9 +51,14 @@ import org.contikios.cooja.mote.memory.MemoryInterface.Symbol;
 import org.jdom2.Element;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import se.sics.mspsim.core.MSP430;
 import se.sics.mspsim.platform.GenericNode;
+import se.sics.mspsim.profiler.CodeCoverage;
+import se.sics.mspsim.profiler.FunctionProfiler;
+import se.sics.mspsim.profiler.PCHistogram;
 import se.sics.mspsim.util.DebugInfo;
 import se.sics.mspsim.util.ELF;
+import se.sics.mspsim.util.Firmware;
 import se.sics.mspsim.util.MapEntry;
 
 /**
@@ -62,7 +74,10 @@ public abstract class MspMoteType extends BaseContikiMoteType {
 
   private boolean loadedDebugInfo;
   private HashMap<File, HashMap<Integer, Integer>> debuggingInfo; /* cached */
-  private ELF elf; /* cached */
+  private Firmware firmware; /* cached */
+  private PCHistogram pcSamples; /* merged from removed motes */
+  private CodeCoverage coverage; /* merged from removed motes */
+  private Map<String, Symbol> symbols; /* cached */
 
   @Override
   protected AbstractCompileDialog createCompilationDialog(Cooja gui, MoteTypeConfig cfg) {
@@ -143,6 +158,9 @@ public abstract class MspMoteType extends BaseContikiMoteType {
   }
 
   Map<String, Symbol> getEntries(GenericNode node) {
+    if (symbols != null) {
+      return symbols;
+    }
     if (Cooja.isVisualized()) {
       EventQueue.invokeLater(() -> Cooja.setProgressMessage("Loading " + getContikiFirmwareFile().getName()));
     }
@@ -154,14 +172,102 @@ public abstract class MspMoteType extends BaseContikiMoteType {
       }
       vars.put(entry.getName(),new Symbol(Symbol.Type.VARIABLE, entry.getName(), entry.getAddress(), entry.getSize()));
     }
-    return vars;
+    symbols = Collections.unmodifiableMap(vars);
+    return symbols;
+  }
+
+  /** Returns the parsed firmware, shared by all motes of this type. */
+  public Firmware getFirmware() throws IOException {
+    if (firmware == null) {
+      firmware = Firmware.load(getContikiFirmwareFile().getPath());
+    }
+    return firmware;
   }
 
   public ELF getELF() throws IOException {
-    if (elf == null) {
-      elf = ELF.readELF(getContikiFirmwareFile().getPath());
+    return getFirmware().getELF();
+  }
+
+  /**
+   * Returns the merged function profile of all motes of this type in the
+   * simulation. Motes that do not use a function profiler are ignored.
+   */
+  public FunctionProfiler getFunctionProfile(Simulation simulation) {
+    var profilers = new ArrayList<FunctionProfiler>();
+    for (Mote mote : simulation.getMotes()) {
+      if (mote.getType() == this && mote instanceof MspMote mspMote
+          && mspMote.getCPU().getProfiler() instanceof FunctionProfiler profiler) {
+        profilers.add(profiler);
+      }
+    }
+    return FunctionProfiler.merge(profilers);
+  }
+
+  /** Adds the PC samples of a mote that is removed from the simulation. */
+  void addPCSamples(PCHistogram histogram) {
+    if (pcSamples == null) {
+      pcSamples = histogram;
+    } else {
+      pcSamples.merge(histogram);
+    }
+  }
+
+  /**
+   * Returns the merged PC samples of all motes of this type, including
+   * removed motes, or null if no mote samples the PC.
+   */
+  public PCHistogram getPCHistogram(Simulation simulation) {
+    PCHistogram total = null;
+    var histograms = new ArrayList<PCHistogram>();
+    if (pcSamples != null) {
+      histograms.add(pcSamples);
+    }
+    for (Mote mote : simulation.getMotes()) {
+      if (mote.getType() == this && mote instanceof MspMote mspMote && mspMote.getPCSampler() != null) {
+        histograms.add(mspMote.getPCSampler().getHistogram());
+      }
+    }
+    for (PCHistogram histogram : histograms) {
+      if (total == null) {
+        total = new PCHistogram(histogram.getFunctionIndex());
+      }
+      total.merge(histogram);
+    }
+    return total;
+  }
+
+  /** Adds the execution counts of a mote that is removed from the simulation. */
+  void addCoverage(MSP430 cpu) {
+    try {
+      if (coverage == null) {
+        coverage = new CodeCoverage(getELF(), cpu.MAX_MEM);
+      }
+      coverage.merge(cpu);
+    } catch (IOException e) {
+      logger.error("Failed to load firmware for code coverage", e);
+    }
+  }
+
+  @Override
+  public void removed() {
+    if (pcSamples != null) {
+      writeReport("pcsamples.txt", pcSamples::printHistogram);
+      pcSamples = null;
+    }
+    if (coverage != null) {
+      writeReport("coverage.info", out -> coverage.writeLcov(out, getIdentifier()));
+      coverage = null;
+    }
+  }
+
+  private void writeReport(String name, Consumer<PrintStream> writer) {
+    var file = Path.of(Cooja.configuration.logDir(), getIdentifier() + "-" + name);
+    try (var out = new PrintStream(Files.newOutputStream(file))) {
+      writer.accept(out);
+      logger.info("Wrote {}", file);
+    } catch (IOException e) {
+      logger.error("Failed to write {}", file, e);
     }
-    return elf;
   }
 
   private HashMap<File, HashMap<Integer, Integer>> getFirmwareDebugInfo()
@@ -63,7 +63,7 @@ public class SkyMoteType extends MspMoteType {
   public MspMote generateMote(Simulation simulation) throws MoteTypeCreationException {
     MSP430 cpu;
     try {
-      cpu = SkyNode.makeCPU(SkyNode.makeChipConfig(), fileFirmware.getAbsolutePath());
+      cpu = SkyNode.makeCPU(SkyNode.makeChipConfig(), getFirmware());
     } catch (IOException e) {
       throw new MoteTypeCreationException("Failed to create CPU", e);
     }
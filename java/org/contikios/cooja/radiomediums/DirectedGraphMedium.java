@@ -36,7 +36,7 @@ import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
-import java.util.Random;
+import java.util.random.RandomGenerator;
 import org.contikios.cooja.ClassDescription;
 import org.contikios.cooja.Mote;
 import org.contikios.cooja.RadioConnection;
@@ -63,7 +63,7 @@ import org.slf4j.LoggerFactory;
 public class DirectedGraphMedium extends AbstractRadioMedium {
   private static final Logger logger = LoggerFactory.getLogger(DirectedGraphMedium.class);
 
-  private final Random random;
+  private final RandomGenerator random;
 
   private final ArrayList<Edge> edges = new ArrayList<>();
   private boolean edgesDirty = true;
@@ -73,7 +73,7 @@ public class DirectedGraphMedium extends AbstractRadioMedium {
 
   public DirectedGraphMedium(Simulation simulation) {
     super(simulation);
-    random = simulation.getRandomGenerator();
+    random = simulation.getRandomGenerator(this);
 
     requestEdgeAnalysis();
   }
@@ -34,7 +34,7 @@ import java.util.Collection;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Random;
+import java.util.random.RandomGenerator;
 import org.contikios.cooja.ClassDescription;
 import org.contikios.cooja.RadioConnection;
 import org.contikios.cooja.Simulation;
@@ -147,13 +147,13 @@ public class LogisticLoss extends AbstractRadioMedium {
 
     private final DirectedGraphMedium dgrm; /* Used only for efficient destination lookup */
 
-    private final Random random;
+    private final RandomGenerator random;
 
     private final HashMap<Index, TimeVaryingEdge> edgesTable = new HashMap<>();
 
     public LogisticLoss(Simulation simulation) {
         super(simulation);
-        random = simulation.getRandomGenerator();
+        random = simulation.getRandomGenerator(this);
         dgrm = new DirectedGraphMedium(simulation) {
                 @Override
                 protected void analyzeEdges() {
@@ -33,7 +33,7 @@ package org.contikios.cooja.radiomediums;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
-import java.util.Random;
+import java.util.random.RandomGenerator;
 import org.contikios.cooja.ClassDescription;
 import org.contikios.cooja.RadioConnection;
 import org.contikios.cooja.Simulation;
@@ -84,11 +84,11 @@ public class UDGM extends AbstractRadioMedium {
 
   private final DirectedGraphMedium dgrm; /* Used only for efficient destination lookup */
 
-  private final Random random;
+  private final RandomGenerator random;
 
   public UDGM(Simulation simulation) {
     super(simulation);
-    random = simulation.getRandomGenerator();
+    random = simulation.getRandomGenerator(this);
     dgrm = new DirectedGraphMedium(simulation) {
       @Override
       protected void analyzeEdges() {
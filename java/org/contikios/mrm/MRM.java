@@ -32,7 +32,7 @@ package org.contikios.mrm;
 
 import java.util.Collection;
 import java.util.HashMap;
-import java.util.Random;
+import java.util.random.RandomGenerator;
 import org.contikios.cooja.ClassDescription;
 import org.contikios.cooja.Cooja;
 import org.contikios.cooja.RadioConnection;
@@ -77,7 +77,7 @@ public class MRM extends AbstractRadioMedium {
   private double CAPTURE_EFFECT_THRESHOLD;
   private double CAPTURE_EFFECT_PREAMBLE_DURATION;
   
-  private final Random random;
+  private final RandomGenerator random;
   private final ChannelModel currentChannelModel;
 
   /**
@@ -86,7 +86,7 @@ public class MRM extends AbstractRadioMedium {
   public MRM(Simulation simulation) {
     super(simulation);
 
-    random = simulation.getRandomGenerator();
+    random = simulation.getRandomGenerator(this);
     currentChannelModel = new ChannelModel(simulation);
     
     WITH_CAPTURE_EFFECT = currentChannelModel.getParameterBooleanValue(ChannelModel.Parameter.captureEffect);
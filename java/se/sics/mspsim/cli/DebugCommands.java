@@ -33,6 +33,8 @@
  * Created : Mon Feb 11 2008
  */
 package se.sics.mspsim.cli;
+import java.io.IOException;
+import java.nio.file.Path;
 import se.sics.mspsim.core.DbgInstruction;
 import se.sics.mspsim.core.DisAsm;
 import se.sics.mspsim.core.EmulationException;
@@ -48,10 +50,12 @@ import se.sics.mspsim.core.MemoryMonitor;
 import se.sics.mspsim.core.RegisterMonitor;
 import se.sics.mspsim.core.TimeEvent;
 import se.sics.mspsim.platform.GenericNode;
+import se.sics.mspsim.profiler.CodeCoverage;
 import se.sics.mspsim.util.ComponentRegistry;
 import se.sics.mspsim.util.DebugInfo;
 import se.sics.mspsim.util.ELF;
 import se.sics.mspsim.util.GDBStubs;
+import se.sics.mspsim.util.InstructionTraceWriter;
 import se.sics.mspsim.util.MapEntry;
 import se.sics.mspsim.util.Utils;
 
@@ -392,9 +396,17 @@ public class DebugCommands implements CommandBundle {
           public int executeCommand(CommandContext context) {
             int adr = context.getArgumentAsAddress(0);
             if (adr >= 0) {
-              int value = cpu.memory[adr];
-              if (adr >= 0x100 && adr + 1 < cpu.MAX_MEM) {
-                  value |= cpu.memory[adr + 1] << 8;
+              int value;
+              if (adr < cpu.MAX_MEM_IO) {
+                  value = cpu.ioMemory[adr];
+                  if (adr >= 0x100 && adr + 1 < cpu.MAX_MEM_IO) {
+                      value |= cpu.ioMemory[adr + 1] << 8;
+                  }
+              } else {
+                  value = cpu.memory[adr] & 0xff;
+                  if (adr + 1 < cpu.MAX_MEM) {
+                      value |= (cpu.memory[adr + 1] & 0xff) << 8;
+                  }
               }
               context.out.println(context.getArgument(0) + " = $" + Utils.hex16(value));
               return 0;
@@ -446,6 +458,7 @@ public class DebugCommands implements CommandBundle {
             context.out.println("Emulated time elapsed: " + time + "(ms)  since last: " + (time - lastCall) + " ms" + " wallTime: " +
                                 wallDiff + " ms speed factor: " +
                                 (wallDiff == 0 ? "N/A" : String.valueOf((time - lastCall) / wallDiff)));
+            context.out.println("Cycles: " + cpu.cycles + "  skipped in busy-wait loops: " + cpu.getSkippedCycles());
             lastCall = time;
             lastWall = System.currentTimeMillis();
             return 0;
@@ -503,9 +516,9 @@ public class DebugCommands implements CommandBundle {
                     start += dbg.getSize();
                 } else {
                     int data;
-                    data = cpu.memory[start++];
+                    data = cpu.memory[start++] & 0xff;
                     if (Utils.size(type) == 2) {
-                        data = data  + (cpu.memory[start++] << 8);
+                        data = data  + ((cpu.memory[start++] & 0xff) << 8);
                     }
                     context.out.print((mode != Utils.ASCII ? " " : "") +
                             Utils.toString(data, type, mode));
@@ -737,6 +750,52 @@ public class DebugCommands implements CommandBundle {
             }
         });
 
+        ch.registerCommand("tracefile", new BasicCommand("stream executed instruction addresses to a file.", "<file> | stop") {
+            @Override
+            public int executeCommand(CommandContext context) {
+                InstructionTraceWriter writer = cpu.getTraceWriter();
+                if (writer != null) {
+                    cpu.setTraceWriter(null);
+                    try {
+                        writer.close();
+                        context.out.println("Traced " + writer.getCount() + " instructions.");
+                    } catch (IOException e) {
+                        context.err.println("Failed to write trace: " + e.getMessage());
+                    }
+                }
+                String name = context.getArgument(0);
+                if ("stop".equals(name)) {
+                    return 0;
+                }
+                try {
+                    cpu.setTraceWriter(new InstructionTraceWriter(Path.of(name)));
+                } catch (IOException e) {
+                    context.err.println("Failed to open trace file: " + e.getMessage());
+                    return 1;
+                }
+                return 0;
+            }
+        });
+
+        ch.registerCommand("coverage", new BasicCommand("print code coverage in lcov format.", "[test name]") {
+            @Override
+            public int executeCommand(CommandContext context) {
+                ELF elf = getELF();
+                if (elf == null) {
+                    context.err.println("No ELF file loaded.");
+                    return 1;
+                }
+                if (!cpu.isMonitorExec()) {
+                    context.err.println("Execution is not monitored, no coverage. In Cooja, set MSPSIM_COVERAGE to enable it.");
+                    return 1;
+                }
+                CodeCoverage coverage = new CodeCoverage(elf, cpu.MAX_MEM);
+                coverage.merge(cpu);
+                coverage.writeLcov(context.out, context.getArgumentCount() > 0 ? context.getArgument(0) : null);
+                return 0;
+            }
+        });
+
         ch.registerCommand("events", new BasicCommand("print event queues", "") {
             @Override
             public int executeCommand(CommandContext context) {
@@ -44,10 +44,13 @@ import se.sics.mspsim.core.Chip;
 import se.sics.mspsim.core.EventListener;
 import se.sics.mspsim.core.MSP430;
 import se.sics.mspsim.core.Profiler;
+import se.sics.mspsim.profiler.FunctionProfiler;
+import se.sics.mspsim.profiler.PCSampler;
 import se.sics.mspsim.profiler.SimpleProfiler;
 import se.sics.mspsim.ui.CPUHeatMap;
 import se.sics.mspsim.ui.WindowManager;
 import se.sics.mspsim.util.ComponentRegistry;
+import se.sics.mspsim.util.MapTable;
 import se.sics.mspsim.util.StackMonitor;
 
 /**
@@ -140,9 +143,61 @@ public class ProfilerCommands implements CommandBundle {
         }
       });
 
+      ch.registerCommand("foldedstacks", new BasicCommand("show profile as folded stacks", "") {
+        @Override
+        public int executeCommand(CommandContext context) {
+          if (!(cpu.getProfiler() instanceof FunctionProfiler profiler)) {
+            context.err.println("No function profiler found. Use 'profiler function' to enable it.");
+            return 1;
+          }
+          profiler.printFoldedStacks(context.out);
+          return 0;
+        }
+      });
+
+      ch.registerCommand("pcsampler", new BasicCommand("sample the PC every N cycles",
+          "[interval|stop]") {
+        @Override
+        public int executeCommand(CommandContext context) {
+          PCSampler sampler = registry.getComponent(PCSampler.class);
+          if (context.getArgumentCount() == 0) {
+            if (sampler == null) {
+              context.err.println("PC sampler not started.");
+              return 1;
+            }
+            sampler.getHistogram().printHistogram(context.out);
+          } else if ("stop".equals(context.getArgument(0))) {
+            if (sampler != null) {
+              sampler.stop();
+            }
+          } else {
+            long interval = context.getArgumentAsLong(0);
+            if (interval <= 0) {
+              context.err.println("Sample interval must be a positive number of cycles.");
+              return 1;
+            }
+            if (sampler == null) {
+              MapTable map = registry.getComponent(MapTable.class);
+              if (map == null) {
+                context.err.println("No map table found.");
+                return 1;
+              }
+              sampler = new PCSampler(cpu, map, true);
+              registry.registerComponent("pcsampler", sampler);
+            }
+            sampler.start(interval);
+          }
+          return 0;
+        }
+      });
+
       ch.registerCommand("stackprof", new BasicCommand("Start stack profiler", "") {
           @Override
           public int executeCommand(CommandContext context) {
+              if (!(cpu.getProfiler() instanceof SimpleProfiler)) {
+                context.err.println("No simple profiler found.");
+                return 1;
+              }
               new StackMonitor(cpu);
               return 0;
           }
@@ -222,8 +277,10 @@ public class ProfilerCommands implements CommandBundle {
             context.err.println("Can not find chip: " + chip2[0]);
             return 1;
           }
-          Profiler profiler = cpu.getProfiler();
-          SimpleProfiler sprof = (SimpleProfiler) profiler;
+          if (!(cpu.getProfiler() instanceof SimpleProfiler sprof)) {
+            context.err.println("No simple profiler found.");
+            return 1;
+          }
           sprof.addProfileTag(context.getArgument(2), chipE1, chip1[1],
               chipE2, chip2[1]);
           return 0;
@@ -233,8 +290,10 @@ public class ProfilerCommands implements CommandBundle {
       ch.registerCommand("printtags", new BasicCommand("print tags profile", "") {
         @Override
         public int executeCommand(CommandContext context) {
-          Profiler profiler = cpu.getProfiler();
-          SimpleProfiler sprof = (SimpleProfiler) profiler;
+          if (!(cpu.getProfiler() instanceof SimpleProfiler sprof)) {
+            context.err.println("No simple profiler found.");
+            return 1;
+          }
           sprof.printTagProfile(context.out);
           return 0;
         }
@@ -266,12 +325,18 @@ public class ProfilerCommands implements CommandBundle {
             @Override
             public int executeCommand(CommandContext context) {
               // TODO: add more API's to the Profiler???
-              SimpleProfiler profiler = (SimpleProfiler) cpu.getProfiler();
-              if (profiler == null) {
-                context.err.println("No profiler found.");
+              String cmd = context.getArgument(0);
+              if ("function".equals(cmd)) {
+                cpu.setProfiler(new FunctionProfiler());
+                return 0;
+              } else if ("simple".equals(cmd)) {
+                cpu.setProfiler(new SimpleProfiler());
+                return 0;
+              }
+              if (!(cpu.getProfiler() instanceof SimpleProfiler profiler)) {
+                context.err.println("No simple profiler found.");
                 return 1;
               }
-              String cmd = context.getArgument(0);
               if ("hide".equals(cmd)) {
                 for (int j = 1, n = context.getArgumentCount(); j < n; j++) {
                   profiler.addIgnoreFunction(context.getArgument(j));
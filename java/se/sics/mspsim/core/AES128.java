@@ -121,7 +121,7 @@ public class AES128 extends IOUnit {
          * @param offset
          */
         public AES128(MSP430Core cpu, int offset) {
-                super("CRC", cpu, cpu.memory, offset);
+                super("CRC", cpu, cpu.ioMemory, offset);
         }
 
         /**
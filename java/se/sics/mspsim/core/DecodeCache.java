@@ -0,0 +1,173 @@
+/*
+ * Copyright (c) 2026, RISE Research Institutes of Sweden AB.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ * 3. Neither the name of the copyright holder nor the names of its
+ *    contributors may be used to endorse or promote products derived
+ *    from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDER AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+ * FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ * COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT,
+ * STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package se.sics.mspsim.core;
+
+/**
+ * Cache of predecoded instruction headers keyed by the address they were
+ * fetched from. The core only consults the cache for instructions fetched
+ * from unmonitored flash, and anything that changes flash contents must call
+ * {@link #invalidate(int, int)}.
+ */
+public final class DecodeCache {
+
+  public enum Mode {
+    /** Always fetch and decode through the memory segments. */
+    OFF,
+    /** Use predecoded instructions from the cache when possible. */
+    ON,
+    /** Use the cache but also decode every instruction uncached and compare. */
+    VERIFY
+  }
+
+  /** The decoded form of the instruction (and extension word) at an address. */
+  static final class Entry {
+    int instruction;
+    int extWord;
+    /* Fields derived from the extension word */
+    int ext3_0;
+    int extSrc;
+    int extDst;
+    boolean repeatsInDstReg;
+    boolean wordx20;
+
+    void decodeExtension(int extWord) {
+      this.extWord = extWord;
+      if (extWord == 0) {
+        ext3_0 = extSrc = extDst = 0;
+        repeatsInDstReg = wordx20 = false;
+        return;
+      }
+      ext3_0 = extWord & 0xf; /* bit 3 - 0 - either repeat count or dest 19-16 */
+      extSrc = ((extWord >> 7) & 0xf) << 16; /* bit 10 - 7 - src 19-16 */
+      extDst = ext3_0 << 16;
+      // Bit 7 in the extension word indicates that the number of
+      // repeats is found in the register pointed to by ext3_0. If
+      // the bit is 0, ext3_0 contains the number of repeats. If the
+      // bit is 1, ext3_0 contains the register number that holds
+      // the number of repeats.
+      repeatsInDstReg = (extWord & 0x80) == 0x80;
+      // Bit 6 indicates whether the data length mode should
+      // be 20 bits. A one means traditional MSP430 mode; a zero
+      // indicates 20 bit mode. (XXX: there is a reserved data
+      // length mode if this bit is zero and the MSP430 instruction
+      // that follows the extension word also has a zero bit data
+      // length mode.)
+      wordx20 = (extWord & 0x40) == 0;
+    }
+
+    /** Returns the number of bytes before the instruction word. */
+    int extSize() {
+      return extWord == 0 ? 0 : 2;
+    }
+
+    boolean sameAs(Entry other) {
+      return instruction == other.instruction && extWord == other.extWord;
+    }
+
+    void copyFrom(Entry other) {
+      instruction = other.instruction;
+      extWord = other.extWord;
+      ext3_0 = other.ext3_0;
+      extSrc = other.extSrc;
+      extDst = other.extDst;
+      repeatsInDstReg = other.repeatsInDstReg;
+      wordx20 = other.wordx20;
+    }
+  }
+
+  private static final int PAGE_BITS = 8;
+  private static final int ENTRIES_PER_PAGE = (1 << PAGE_BITS) >> 1;
+
+  private final Entry[][] pages;
+
+  private long hits;
+  private long misses;
+
+  DecodeCache(int maxMem) {
+    pages = new Entry[maxMem >> PAGE_BITS][];
+  }
+
+  /** Returns the cached entry for the word aligned address, or null. */
+  Entry get(int address) {
+    Entry[] page = pages[address >> PAGE_BITS];
+    if (page == null) {
+      misses++;
+      return null;
+    }
+    Entry entry = page[(address & 0xff) >> 1];
+    if (entry == null) {
+      misses++;
+    } else {
+      hits++;
+    }
+    return entry;
+  }
+
+  /** Stores a copy of the decoded instruction and returns the cached entry. */
+  Entry put(int address, Entry decoded) {
+    Entry[] page = pages[address >> PAGE_BITS];
+    if (page == null) {
+      pages[address >> PAGE_BITS] = page = new Entry[ENTRIES_PER_PAGE];
+    }
+    int index = (address & 0xff) >> 1;
+    Entry entry = page[index];
+    if (entry == null) {
+      page[index] = entry = new Entry();
+    }
+    entry.copyFrom(decoded);
+    return entry;
+  }
+
+  /**
+   * Drops all entries that may have been decoded from memory in the range
+   * [start, end). An entry covers up to two words, so the page before the
+   * range is also dropped when the range starts at a page boundary.
+   */
+  public void invalidate(int start, int end) {
+    int first = Math.max(0, (start - 2) >> PAGE_BITS);
+    int last = Math.min(pages.length - 1, (end - 1) >> PAGE_BITS);
+    for (int i = first; i <= last; i++) {
+      pages[i] = null;
+    }
+  }
+
+  public void clear() {
+    invalidate(0, pages.length << PAGE_BITS);
+  }
+
+  public long getHits() {
+    return hits;
+  }
+
+  public long getMisses() {
+    return misses;
+  }
+}
@@ -42,10 +42,23 @@
 package se.sics.mspsim.core;
 
 import java.io.PrintStream;
+import java.util.Arrays;
+import java.util.Comparator;
 
+/**
+ * Binary min-heap of time events. Every event keeps its heap position so
+ * add, reschedule and remove are O(log n).
+ * <p>
+ * Events with equal times are executed in reverse insertion order, which
+ * is the order the earlier sorted linked list used.
+ */
 class EventQueue {
 
-  private TimeEvent first;
+  private static final Comparator<TimeEvent> ORDER =
+      (a, b) -> a.time != b.time ? Long.compare(a.time, b.time) : Long.compare(b.order, a.order);
+
+  private TimeEvent[] heap = new TimeEvent[16];
+  private long count;
   public long nextTime;
   public int eventCount;
 
@@ -53,109 +66,117 @@ class EventQueue {
   }
 
   public void addEvent(TimeEvent event, long time) {
-    event.time = time;
-    addEvent(event);
-  }
-
-  private void addEvent(TimeEvent event) {
     if (event.scheduledIn != null) {
       event.remove();
     }
-    if (first == null) {
-      first = event;
-    } else {
-      TimeEvent pos = first;
-      TimeEvent lastPos = first;
-      while (pos != null && pos.time < event.time) {
-        lastPos = pos;
-        pos = pos.nextEvent;
-      }
-      event.nextEvent = pos;
-      // Here pos will be the first TE after event and lastPos the first before.
-      if (pos == first) {
-        // Before all other
-        first = event;
-      } else {
-        lastPos.nextEvent = event;
-      }
+    event.time = time;
+    // Later insertions go first among events with the same time.
+    event.order = count++;
+    if (eventCount == heap.length) {
+      heap = Arrays.copyOf(heap, eventCount * 2);
     }
-    nextTime = first.time;
+    siftUp(eventCount++, event);
+    nextTime = heap[0].time;
     event.scheduledIn = this;
-    eventCount++;
   }
 
-  // Not yet impl.
   public boolean removeEvent(TimeEvent event) {
-    TimeEvent pos = first;
-    TimeEvent lastPos = first;
-    while (pos != null && pos != event) {
-      lastPos = pos;
-      pos = pos.nextEvent;
-    }
-    if (pos == null) return false;
-    // pos == event!
-    if (pos == first) {
-      // remove it from first pos.
-      first = pos.nextEvent;
-    } else {
-      // else link prev to next...
-      lastPos.nextEvent = pos.nextEvent;
-    }
-    // unlink
-    pos.nextEvent = null;
-
-    if (first != null) {
-      nextTime = first.time;
-    } else {
-      nextTime = 0;
+    if (event.scheduledIn != this) return false;
+    int i = event.heapIndex;
+    TimeEvent last = heap[--eventCount];
+    heap[eventCount] = null;
+    if (i < eventCount) {
+      if (i > 0 && before(last, heap[(i - 1) >>> 1])) {
+        siftUp(i, last);
+      } else {
+        siftDown(i, last);
+      }
     }
+    nextTime = eventCount > 0 ? heap[0].time : 0;
+    event.heapIndex = -1;
     event.scheduledIn = null;
-    eventCount--;
     return true;
   }
 
   public TimeEvent popFirst() {
-    TimeEvent tmp = first;
-    if (tmp != null) {
-      first = tmp.nextEvent;
-      // Unlink.
-      tmp.nextEvent = null;
-
-      // No longer scheduled!
-      tmp.scheduledIn = null;
-
-      eventCount--;
+    if (eventCount == 0) {
+      nextTime = 0;
+      return null;
     }
-
-    if (first != null) {
-      nextTime = first.time;
+    TimeEvent tmp = heap[0];
+    TimeEvent last = heap[--eventCount];
+    heap[eventCount] = null;
+    if (eventCount > 0) {
+      siftDown(0, last);
+      nextTime = heap[0].time;
     } else {
       nextTime = 0;
     }
+    tmp.heapIndex = -1;
+    // No longer scheduled!
+    tmp.scheduledIn = null;
     return tmp;
   }
 
   public void removeAll() {
-    TimeEvent t = first;
-    while(t != null) {
-      TimeEvent clr = t;
-      t = t.nextEvent;
-      clr.nextEvent = null;
+    for (int i = 0; i < eventCount; i++) {
+      TimeEvent clr = heap[i];
+      heap[i] = null;
+      clr.heapIndex = -1;
       clr.time = 0;
       clr.scheduledIn = null;
     }
-    first = null;
     eventCount = 0;
   }
 
+  private static boolean before(TimeEvent a, TimeEvent b) {
+    return a.time < b.time || (a.time == b.time && a.order > b.order);
+  }
+
+  private void siftUp(int i, TimeEvent event) {
+    while (i > 0) {
+      int parent = (i - 1) >>> 1;
+      TimeEvent p = heap[parent];
+      if (!before(event, p)) {
+        break;
+      }
+      heap[i] = p;
+      p.heapIndex = i;
+      i = parent;
+    }
+    heap[i] = event;
+    event.heapIndex = i;
+  }
+
+  private void siftDown(int i, TimeEvent event) {
+    int half = eventCount >>> 1;
+    while (i < half) {
+      int child = 2 * i + 1;
+      TimeEvent c = heap[child];
+      int right = child + 1;
+      if (right < eventCount && before(heap[right], c)) {
+        child = right;
+        c = heap[child];
+      }
+      if (!before(c, event)) {
+        break;
+      }
+      heap[i] = c;
+      c.heapIndex = i;
+      i = child;
+    }
+    heap[i] = event;
+    event.heapIndex = i;
+  }
+
   public void print(PrintStream out) {
-    TimeEvent t = first;
+    TimeEvent[] events = Arrays.copyOf(heap, eventCount);
+    Arrays.sort(events, ORDER);
     out.print("nxt: " + nextTime + " [");
-    while(t != null) {
-      out.print(t.getShort());
-      t = t.nextEvent;
-      if (t != null) out.print(", ");
+    for (int i = 0; i < events.length; i++) {
+      if (i > 0) out.print(", ");
+      out.print(events[i].getShort());
     }
     out.println("]");
   }
-} // LLEventQueue
+} // EventQueue
@@ -103,6 +103,7 @@ public class Flash extends IOUnit {
   private static final int FN_MASK = 0x3f;
   private static final int LOCKINFO = 0x80;
 
+  private final byte[] flashMemory;
   private final FlashRange main_range;
   private final FlashRange info_range;
 
@@ -173,9 +174,10 @@ public class Flash extends IOUnit {
     }
   };
 
-  public Flash(MSP430Core cpu, int[] memory, FlashRange main_range,
+  public Flash(MSP430Core cpu, byte[] flashMemory, FlashRange main_range,
       FlashRange info_range, int offset) {
-    super("Flash", "Internal Flash", cpu, memory, offset);
+    super("Flash", "Internal Flash", cpu, cpu.ioMemory, offset);
+    this.flashMemory = flashMemory;
     this.main_range = main_range;
     this.info_range = info_range;
     locked = true;
@@ -270,8 +272,9 @@ public class Flash extends IOUnit {
             Utils.hex(area_end, 4));
       }
       for (int i = area_start; i < area_end; i++) {
-        memory[i] = 0xff;
+        flashMemory[i] = (byte) 0xff;
       }
+      cpu.invalidateDecodeCache(area_start, area_end);
       waitFlashProcess(SEGMENT_ERASE_TIME);
       break;
 
@@ -280,18 +283,21 @@ public class Flash extends IOUnit {
         return;
       }
       for (int i = main_range.start; i < main_range.end; i++) {
-        memory[i] = 0xff;
+        flashMemory[i] = (byte) 0xff;
       }
+      cpu.invalidateDecodeCache(main_range.start, main_range.end);
       waitFlashProcess(MASS_ERASE_TIME);
       break;
 
     case ERASE_ALL:
       for (int i = main_range.start; i < main_range.end; i++) {
-        memory[i] = 0xff;
+        flashMemory[i] = (byte) 0xff;
       }
       for (int i = info_range.start; i < main_range.end; i++) {
-        memory[i] = 0xff;
+        flashMemory[i] = (byte) 0xff;
       }
+      cpu.invalidateDecodeCache(main_range.start, main_range.end);
+      cpu.invalidateDecodeCache(info_range.start, main_range.end);
       waitFlashProcess(MASS_ERASE_TIME);
       break;
     case WRITE_SINGLE:
@@ -315,15 +321,16 @@ public class Flash extends IOUnit {
         wait_time = WRITE_TIME;
       }
       /* Flash memory allows clearing bits only */
-      memory[address] &= data & 0xff;
+      flashMemory[address] &= (byte) data;
       if (dataMode != AccessMode.BYTE) {
-          memory[address + 1] &= (data >> 8) & 0xff;
+          flashMemory[address + 1] &= (byte) (data >> 8);
           if (dataMode == AccessMode.WORD20) {
               /* TODO should the write really write the full word? CHECK THIS */
-              memory[address + 2] &= (data >> 16) & 0xff;
-              memory[address + 3] &= (data >> 24) & 0xff;
+              flashMemory[address + 2] &= (byte) (data >> 16);
+              flashMemory[address + 3] &= (byte) (data >> 24);
           }
       }
+      cpu.invalidateDecodeCache(address, address + dataMode.bytes);
       if (DEBUG) {
         log("Writing $" + Utils.hex20(data) + " to $" + Utils.hex(address, 4) + " (" + dataMode.bytes + " bytes)");
       }
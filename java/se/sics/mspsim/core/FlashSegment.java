@@ -5,7 +5,7 @@ import se.sics.mspsim.core.EmulationLogger.WarningType;
 public class FlashSegment implements Memory {
 
     private final MSP430Core core;
-    private final int[] memory;
+    private final byte[] memory;
     private final Flash flash;
 
     public FlashSegment(MSP430Core core, Flash flash) {
@@ -43,13 +43,13 @@ public class FlashSegment implements Memory {
     public int get(int address, AccessMode mode) {
         int val = memory[address] & 0xff;
         if (mode != AccessMode.BYTE) {
-            val |= (memory[address + 1] << 8);
+            val |= ((memory[address + 1] & 0xff) << 8);
             if ((address & 1) != 0) {
                 core.printWarning(WarningType.MISALIGNED_READ, address);
             }
             if (mode == AccessMode.WORD20) {
                 /* will the read really get data from the full word? CHECK THIS */
-                val |= (memory[address + 2] << 16) | (memory[address + 3] << 24);
+                val |= ((memory[address + 2] & 0xff) << 16) | ((memory[address + 3] & 0xff) << 24);
                 val &= 0xfffff;
             } else {
                 val &= 0xffff;
@@ -401,6 +401,12 @@ public class GenericUSCI extends IOUnit implements DMATrigger, USARTSource {
         return 0;
     }
 
+    @Override
+    public boolean isReadStable(int address) {
+        /* reading the receive buffer clears the interrupt flag */
+        return address - offset != RXBUF;
+    }
+
     /* reuse USART listener API for USCI */
     @Override
     public synchronized void addUSARTListener(USARTListener listener) {
@@ -39,6 +39,12 @@ public class IOSegment implements Memory {
         return val;
     }
 
+    /* Returns true if the read has no side effects and the value can only change by a write or an event */
+    boolean isReadStable(int address, AccessMode mode) {
+        return mem[address].isReadStable(address)
+                && (mode != AccessMode.WORD20 || mem[address + 2].isReadStable(address));
+    }
+
     @Override
     public void write(int dstAddress, int data, AccessMode mode) throws EmulationException {
         boolean word = mode != AccessMode.BYTE;
@@ -112,6 +112,15 @@ public abstract class IOUnit implements InterruptHandler, Loggable {
   // read a value from the IO unit
   public abstract int read(int address, boolean word, long cycles);
 
+  /**
+   * Returns true if reading the address has no side effects and the value
+   * read can only change when the unit is written or handles an event.
+   * The CPU only fast-forwards busy-wait loops that poll such addresses.
+   */
+  public boolean isReadStable(int address) {
+    return false;
+  }
+
   @Override
   public String getID() {
       return id;
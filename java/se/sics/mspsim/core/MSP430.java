@@ -37,18 +37,23 @@
 
 package se.sics.mspsim.core;
 import java.io.PrintStream;
+import java.util.function.LongSupplier;
 import se.sics.mspsim.profiler.SimpleProfiler;
 import se.sics.mspsim.util.ArrayUtils;
 import se.sics.mspsim.util.ELF;
+import se.sics.mspsim.util.InstructionTraceWriter;
 import se.sics.mspsim.util.MapTable;
 
 public class MSP430 extends MSP430Core {
 
-  private int[] execCounter;
+  /* saturating execution counts per address */
+  private byte[] execCounter;
   private int[] trace;
   private int tracePos;
+  private InstructionTraceWriter traceWriter;
 
   private boolean debug;
+  private boolean steppingInstructions;
   private boolean running;
   private boolean isBreaking;
   private double rate = 2.0;
@@ -70,7 +75,7 @@ public class MSP430 extends MSP430Core {
    * Creates a new <code>MSP430</code> instance.
    *
    */
-  public MSP430(MSP430Config config, int[] mem, ELF elf) {
+  public MSP430(MSP430Config config, byte[] mem, ELF elf) {
     super(config, mem);
     disAsm = new DisAsm();
     if (elf != null) {
@@ -105,6 +110,8 @@ public class MSP430 extends MSP430Core {
   }
 
   private void run() throws EmulationException {
+      stopBusyWait();
+      quietCycles = -1;
       while (!isStopping) {
 
       if (cycles > nextOut && !debug) {
@@ -114,14 +121,17 @@ public class MSP430 extends MSP430Core {
 
       int pc = emulateOP(-1);
       if (pc >= 0) {
-        if (execCounter != null) {
-          execCounter[pc]++;
+        if (execCounter != null && ++execCounter[pc] == 0) {
+          execCounter[pc] = -1;
         }
         if (trace != null) {
             trace[tracePos++] = pc;
             if (tracePos >= trace.length)
                 tracePos = 0;
         }
+        if (traceWriter != null) {
+            traceWriter.add(pc);
+        }
         // -------------------------------------------------------------------
         // Debug information
         // -------------------------------------------------------------------
@@ -159,13 +169,16 @@ public class MSP430 extends MSP430Core {
       throw new IllegalStateException("step not possible when CPU is running");
     }
     setRunning(true);
+    stopBusyWait();
+    quietCycles = -1;
+    steppingInstructions = true;
     try {
     while (count > 0 && !isStopping) {
       int pc = emulateOP(-1);
       if (pc >= 0) {
         count--;
-        if (execCounter != null) {
-          execCounter[pc]++;
+        if (execCounter != null && ++execCounter[pc] == 0) {
+          execCounter[pc] = -1;
         }
         if (trace != null) {
           trace[tracePos++] = pc;
@@ -173,6 +186,9 @@ public class MSP430 extends MSP430Core {
             tracePos = 0;
           }
         }
+        if (traceWriter != null) {
+          traceWriter.add(pc);
+        }
 
         // -------------------------------------------------------------------
         // Debug information
@@ -187,12 +203,20 @@ public class MSP430 extends MSP430Core {
       }
     }
     } finally {
+        steppingInstructions = false;
         setRunning(false);
     }
     isStopping = isBreaking = false;
     return cycles;
   }
 
+  /* Skipped loop iterations would be missing from the instruction count, trace and debug output */
+  @Override
+  protected boolean canSkipBusyWait() {
+    return !steppingInstructions && execCounter == null && trace == null && traceWriter == null && !debug
+        && super.canSkipBusyWait();
+  }
+
   /* this represents the micros time that was "promised" last time */
   /* NOTE: this is a delta compared to "current micros"
    */
@@ -204,6 +228,7 @@ public class MSP430 extends MSP430Core {
   @Override
   protected void dcoReset() {
       microClockReady = false;
+      quietCycles = -1;
   }
 
   /*
@@ -213,6 +238,24 @@ public class MSP430 extends MSP430Core {
    */
   private long maxCycles;
   public long stepMicros(long jumpMicros, long executeMicros) throws EmulationException {
+    return stepMicros(jumpMicros, executeMicros, null);
+  }
+
+  /* Source of the quiet period of the current step, see stepMicros(long, long, LongSupplier) */
+  private LongSupplier quietMicros;
+  private long quietMicrosDelta;
+  private long quietExecuteMicros;
+
+  /*
+   * As stepMicros(jumpMicros, executeMicros), but quietMicros returns for how
+   * long (counted from the start of the current step) nothing outside of the
+   * CPU will access memory or IO during consecutive 1:1 steps. This lets
+   * busy-wait loops be fast-forwarded past the end of this step.
+   * The period is queried again before every fast-forward, so it must reflect
+   * anything scheduled while the step executes. A step that starts after the
+   * period ended, or after it was shortened, restarts busy-wait detection.
+   */
+  public long stepMicros(long jumpMicros, long executeMicros, LongSupplier quietMicros) throws EmulationException {
     if (isRunning()) {
       throw new IllegalStateException("step not possible when CPU is running");
     }
@@ -253,12 +296,22 @@ public class MSP430 extends MSP430Core {
     /* run until this cycle time */
     maxCycles = lastMicrosCycles + ((lastMicrosDelta + executeMicros) * dcoFrq) / 1000000;
 
+    this.quietMicros = quietMicros;
+    quietMicrosDelta = lastMicrosDelta;
+    quietExecuteMicros = executeMicros;
+    long quiet = getQuietCycles();
+    if (maxCycles >= quietCycles || quiet < quietCycles) {
+      /* memory and IO might have been changed since the last step */
+      stopBusyWait();
+    }
+    quietCycles = quiet;
+
 
     while (cycles < maxCycles || (cpuOff && (nextEventCycles < cycles))) {
         int pc = emulateOP(maxCycles);
         if (pc >= 0) {
-            if (execCounter != null) {
-                execCounter[pc]++;
+            if (execCounter != null && ++execCounter[pc] == 0) {
+                execCounter[pc] = -1;
             }
             if (trace != null) {
               if (tracePos >= trace.length) {
@@ -266,6 +319,9 @@ public class MSP430 extends MSP430Core {
               }
               trace[tracePos++] = pc;
             }
+            if (traceWriter != null) {
+              traceWriter.add(pc);
+            }
             // -------------------------------------------------------------------
             // Debug information
             // -------------------------------------------------------------------
@@ -293,6 +349,9 @@ public class MSP430 extends MSP430Core {
         }
     }
 
+    /* something might have been scheduled during the step */
+    quietCycles = Math.min(quietCycles, getQuietCycles());
+
     if (cpuOff && !(interruptsEnabled && servicedInterrupt == -1 && interruptMax >= 0)) {
       lastReturnedMicros = (1000000 * (nextEventCycles - cycles)) / dcoFrq;
     } else {
@@ -306,6 +365,15 @@ public class MSP430 extends MSP430Core {
     return lastReturnedMicros;
   }
 
+  @Override
+  protected long getQuietCycles() {
+    long micros = quietMicros == null ? 0 : quietMicros.getAsLong();
+    if (micros > quietExecuteMicros) {
+      return lastMicrosCycles + ((quietMicrosDelta + micros) * dcoFrq) / 1000000;
+    }
+    return maxCycles;
+  }
+
   public void stop() {
       isStopping = true;
   }
@@ -318,17 +386,25 @@ public class MSP430 extends MSP430Core {
   public int getDCOFrequency() {
     return dcoFrq;
   }
+  /**
+   * Returns the number of times the instruction at the address has been
+   * executed, saturating at 255, or 0 if execution is not monitored.
+   */
   public int getExecCount(int address) {
     if (execCounter != null) {
-      return execCounter[address];
+      return execCounter[address] & 0xff;
     }
     return 0;
   }
 
+  public boolean isMonitorExec() {
+    return execCounter != null;
+  }
+
   public void setMonitorExec(boolean mon) {
     if (mon) {
       if (execCounter == null) {
-        execCounter = new int[MAX_MEM];
+        execCounter = new byte[MAX_MEM];
       }
     } else {
       execCounter = null;
@@ -344,6 +420,18 @@ public class MSP430 extends MSP430Core {
       tracePos = 0;
   }
 
+  /**
+   * Streams the address of each executed instruction to the trace writer,
+   * or stops streaming if null. The caller closes the writer.
+   */
+  public void setTraceWriter(InstructionTraceWriter writer) {
+    traceWriter = writer;
+  }
+
+  public InstructionTraceWriter getTraceWriter() {
+    return traceWriter;
+  }
+
   public int getBackTrace(int pos) {
       int tPos = tracePos - pos - 1;
       if (tPos < 0) {
@@ -41,6 +41,7 @@ import java.io.PrintStream;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.HashMap;
 import se.sics.mspsim.core.EmulationLogger.WarningType;
 import se.sics.mspsim.core.Memory.AccessMode;
 import se.sics.mspsim.core.Memory.AccessType;
@@ -71,7 +72,10 @@ public class MSP430Core extends Chip implements MSP430Constants {
   private final RegisterMonitor[] regWriteMonitors = new RegisterMonitor[16];
   private final RegisterMonitor[] regReadMonitors = new RegisterMonitor[16];
 
-  public final int[] memory;
+  /* RAM and flash, one byte per address */
+  public final byte[] memory;
+  /* Register storage for the IO units, indexed by IO address */
+  public final int[] ioMemory;
   private final Flash flash;
   boolean isFlashBusy;
   boolean isStopping;
@@ -79,9 +83,35 @@ public class MSP430Core extends Chip implements MSP430Constants {
   private final Memory[] memorySegments;
   Memory currentSegment;
 
+  /* Pages of plain RAM or flash without watchpoints that can be accessed without the segment objects */
+  private static final byte PAGE_SEGMENT = 0;
+  private static final byte PAGE_RAM = 1;
+  private static final byte PAGE_FLASH = 2;
+  private final byte[] pageTypes;
+
+  /* Unmonitored memory access - instructions fetched through it can be cached */
+  private final Memory directMemory;
+  private final DecodeCache decodeCache;
+  private final DecodeCache.Entry fetchedInstruction = new DecodeCache.Entry();
+  private DecodeCache.Mode decodeCacheMode = DecodeCache.Mode.ON;
+
+  /* Busy-wait loop fast-forward, see checkBusyWait() */
+  private static final int BUSY_WAIT_MAX_SIZE = 16;
+  private final Memory busyWaitMemory;
+  private boolean busyWaitSkip = true;
+  private int busyWaitStart = -1;
+  private int busyWaitEnd;
+  private long busyWaitCycles;
+  private boolean busyWaitTainted;
+  private final int[] busyWaitRegisters = new int[16];
+  private long skippedCycles;
+  /* Cycle count until which nothing outside of the CPU accesses memory or IO, if beyond maxCycles */
+  protected long quietCycles = -1;
+
   public long cycles;
   public long cpuCycles;
   MapTable map;
+  private final HashMap<Integer, MapEntry> unknownFunctions = new HashMap<>();
   public final boolean MSP430XArch;
   public final MSP430Config config;
 
@@ -131,7 +161,7 @@ public class MSP430Core extends Chip implements MSP430Constants {
   final ComponentRegistry registry;
   Profiler profiler;
 
-  public MSP430Core(MSP430Config config, int[] mem) {
+  public MSP430Core(MSP430Config config, byte[] mem) {
     super("MSP430", "MSP430 Core", null);
     var registry = new ComponentRegistry(
             new ComponentEntry("cpu", this),
@@ -142,19 +172,31 @@ public class MSP430Core extends Chip implements MSP430Constants {
     MSP430XArch = config.MSP430XArch;
 
     memory = mem;
+    ioMemory = new int[MAX_MEM_IO];
     memorySegments = new Memory[MAX_MEM >> 8];
+    pageTypes = new byte[MAX_MEM >> 8];
 
     flash = new Flash(this, memory,
             new Flash.FlashRange(config.mainFlashStart, config.mainFlashStart + config.mainFlashSize, 512, 64),
             new Flash.FlashRange(config.infoMemStart, config.infoMemStart + config.infoMemSize, 128, 64),
             config.flashControllerOffset);
 
-    currentSegment = new Memory() {
+    decodeCache = new DecodeCache(MAX_MEM);
+    currentSegment = directMemory = new Memory() {
         @Override
         public int read(int address, AccessMode mode, AccessType type) throws EmulationException {
             if (address >= MAX_MEM) {
                 throw new EmulationException("Reading outside memory: 0x" + Utils.hex(address, 4));
             }
+            int page = pageTypes[address >> 8];
+            if (page == PAGE_RAM || (page == PAGE_FLASH && !isFlashBusy)) {
+                if (mode == AccessMode.BYTE) {
+                    return memory[address] & 0xff;
+                }
+                if (mode == AccessMode.WORD && (address & 1) == 0) {
+                    return (memory[address] & 0xff) | ((memory[address + 1] & 0xff) << 8);
+                }
+            }
             return memorySegments[address >> 8].read(address, mode, type);
         }
         @Override
@@ -162,6 +204,17 @@ public class MSP430Core extends Chip implements MSP430Constants {
             if (address >= MAX_MEM) {
                 throw new EmulationException("Writing outside memory: 0x" + Utils.hex(address, 4));
             }
+            if (pageTypes[address >> 8] == PAGE_RAM) {
+                if (mode == AccessMode.BYTE) {
+                    memory[address] = (byte) data;
+                    return;
+                }
+                if (mode == AccessMode.WORD && (address & 1) == 0) {
+                    memory[address] = (byte) data;
+                    memory[address + 1] = (byte) (data >> 8);
+                    return;
+                }
+            }
             memorySegments[address >> 8].write(address, data, mode);
         }
         @Override
@@ -179,8 +232,31 @@ public class MSP430Core extends Chip implements MSP430Constants {
             memorySegments[address >> 8].set(address, data, mode);
         }
     };
+    /* Used while observing a busy-wait loop to see whether the loop body touches anything that might change */
+    busyWaitMemory = new Memory() {
+        @Override
+        public int read(int address, AccessMode mode, AccessType type) throws EmulationException {
+            if (!isStableRead(address, mode)) {
+                busyWaitTainted = true;
+            }
+            return directMemory.read(address, mode, type);
+        }
+        @Override
+        public void write(int address, int data, AccessMode mode) throws EmulationException {
+            busyWaitTainted = true;
+            directMemory.write(address, data, mode);
+        }
+        @Override
+        public int get(int address, AccessMode mode) {
+            return directMemory.get(address, mode);
+        }
+        @Override
+        public void set(int address, int data, AccessMode mode) {
+            directMemory.set(address, data, mode);
+        }
+    };
     /* this is for detecting writes/read to/from non-existing IO */
-    IOUnit voidIO = new IOUnit("void", this, memory, 0) {
+    IOUnit voidIO = new IOUnit("void", this, ioMemory, 0) {
         @Override
         public void interruptServiced(int vector) {
         }
@@ -206,6 +282,7 @@ public class MSP430Core extends Chip implements MSP430Constants {
         if (config.isRAM(i << 8)) {
 //            System.out.println("Setting RAM segment at: " + Utils.hex16(i << 8));
             memorySegments[i] = ramSegment;
+            pageTypes[i] = PAGE_RAM;
         } else if (config.isRAMMirror(i << 8)) {
             if (ramMirrorSegment == null) {
                 ramMirrorSegment = new RAMOffsetSegment(this, config.ramMirrorAddress - config.ramMirrorStart);
@@ -214,6 +291,7 @@ public class MSP430Core extends Chip implements MSP430Constants {
         } else if (config.isFlash(i << 8) || config.isInfoMem(i << 8)) {
 //            System.out.println("Setting Flash segment at: " + Utils.hex16(i << 8));
             memorySegments[i] = flashSegment;
+            pageTypes[i] = PAGE_FLASH;
         } else if (config.isIO(i << 8)) {
 //            System.out.println("Setting IO segment at: " + Utils.hex16(i << 8));
             memorySegments[i] = ioSegment;
@@ -237,19 +315,19 @@ public class MSP430Core extends Chip implements MSP430Constants {
     ioSegment.setIORange(config.flashControllerOffset, Flash.SIZE, flash);
 
     /* Setup special function registers */
-    sfr = new SFR(this, memory);
+    sfr = new SFR(this, ioMemory);
     ioSegment.setIORange(config.sfrOffset, 0x10, sfr);
 
     // first step towards making core configurable
     Timer[] timers = new Timer[config.timerConfig.length];
     for (int i = 0; i < config.timerConfig.length; i++) {
-        Timer t = new Timer(this, memory, config.timerConfig[i]);
+        Timer t = new Timer(this, ioMemory, config.timerConfig[i]);
         ioSegment.setIORange(config.timerConfig[i].offset, 0x20, t);
         ioSegment.setIORange(config.timerConfig[i].timerIVAddr, 1, t);
         timers[i] = t;
     }
 
-    bcs = config.createClockSystem(this, memory, timers);
+    bcs = config.createClockSystem(this, ioMemory, timers);
     ioSegment.setIORange(bcs.getAddressRangeMin(), bcs.getAddressRangeMax() - bcs.getAddressRangeMin() + 1, bcs);
 
     // SFR and Basic clock system.
@@ -282,12 +360,14 @@ public class MSP430Core extends Chip implements MSP430Constants {
   }
 
   public void setProfiler(Profiler prof) {
+    registry.removeComponent("profiler");
     registry.registerComponent("profiler", prof);
     profiler = prof;
     profiler.setCPU(this);
   }
 
   public synchronized void addGlobalMonitor(MemoryMonitor mon) {
+      stopBusyWait();
       GlobalWatchedMemory gwm;
       if (currentSegment instanceof GlobalWatchedMemory mem) {
           gwm = mem;
@@ -381,6 +461,7 @@ public class MSP430Core extends Chip implements MSP430Constants {
       } else {
           wm = new WatchedMemory(address & 0xfff00, memorySegments[seg]);
           memorySegments[seg] = wm;
+          pageTypes[seg] = PAGE_SEGMENT;
       }
       wm.addWatchPoint(address, mon);
   }
@@ -583,6 +664,7 @@ public class MSP430Core extends Chip implements MSP430Constants {
   }
 
   private void executeEvents() {
+    stopBusyWait();
     if (cycles >= nextVTimeEventCycles) {
       if (vTimeEventQueue.eventCount == 0) {
         nextVTimeEventCycles = cycles + 10000;
@@ -722,6 +804,7 @@ public class MSP430Core extends Chip implements MSP430Constants {
     servicedInterruptUnit = null;
     servicedInterrupt = -1;
     interruptMax = -1;
+    stopBusyWait();
     writeRegister(SR, 0);
 
     cycleEventQueue.removeAll();
@@ -806,9 +889,12 @@ public class MSP430Core extends Chip implements MSP430Constants {
   }
 
   void profileCall(int dst, int pc) {
+      if (profiler.profileCall(dst, cpuCycles, pc)) {
+          return;
+      }
       MapEntry function = map.getEntry(dst);
       if (function == null) {
-          function = getFunction(map, dst);
+          function = getFunction(dst);
       }
       profiler.profileCall(function, cpuCycles, pc);
   }
@@ -905,6 +991,158 @@ public class MSP430Core extends Chip implements MSP430Constants {
     return pc;
   }
 
+  public DecodeCache getDecodeCache() {
+    return decodeCache;
+  }
+
+  public DecodeCache.Mode getDecodeCacheMode() {
+    return decodeCacheMode;
+  }
+
+  public void setDecodeCacheMode(DecodeCache.Mode mode) {
+    decodeCacheMode = mode;
+    decodeCache.clear();
+  }
+
+  /* Must be called when memory that might contain instructions is modified outside the CPU */
+  public void invalidateDecodeCache(int start, int end) {
+    decodeCache.invalidate(start, end);
+  }
+
+  public boolean isBusyWaitSkip() {
+    return busyWaitSkip;
+  }
+
+  /* Fast-forwarding busy-wait loops does not change the emulation result, only the number of emulated instructions */
+  public void setBusyWaitSkip(boolean skip) {
+    busyWaitSkip = skip;
+    stopBusyWait();
+  }
+
+  /* Returns the number of cycles passed without emulating busy-wait loop iterations */
+  public long getSkippedCycles() {
+    return skippedCycles;
+  }
+
+  /* Returns false if something needs to see every emulated instruction */
+  protected boolean canSkipBusyWait() {
+    for (int i = 0; i < 16; i++) {
+      if (regWriteMonitors[i] != null || regReadMonitors[i] != null) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /* Returns the cycle count until which nothing outside of the CPU accesses memory or IO */
+  protected long getQuietCycles() {
+    return quietCycles;
+  }
+
+  /* Stops observing the current busy-wait loop, if any */
+  protected void stopBusyWait() {
+    if (busyWaitStart >= 0) {
+      busyWaitStart = -1;
+      if (currentSegment == busyWaitMemory) {
+        currentSegment = directMemory;
+      }
+    }
+  }
+
+  /*
+   * Called after a taken backward jump. The first time, the loop is observed
+   * for one iteration. If the iteration left all registers unchanged without
+   * writing memory, reading anything that may change before the next event or
+   * leaving the loop, every following iteration will be identical until the
+   * next event, so the iterations that end before it are skipped.
+   */
+  private void checkBusyWait(int jumpAddress, int target, long maxCycles) {
+    if (target == busyWaitStart && jumpAddress == busyWaitEnd) {
+      if (!busyWaitTainted && Arrays.equals(reg, busyWaitRegisters)) {
+        long period = cycles - busyWaitCycles;
+        long limit = nextEventCycles;
+        if (maxCycles >= 0) {
+          limit = Math.min(limit, Math.max(maxCycles, getQuietCycles()));
+        }
+        long iterations = (limit - 1 - cycles) / period;
+        if (iterations > 0) {
+          cycles += iterations * period;
+          skippedCycles += iterations * period;
+        }
+      }
+    } else {
+      stopBusyWait();
+      if (target < 0 || jumpAddress - target > BUSY_WAIT_MAX_SIZE
+          || currentSegment != directMemory || isStopping || !canSkipBusyWait()) {
+        return;
+      }
+      busyWaitStart = target;
+      busyWaitEnd = jumpAddress;
+      currentSegment = busyWaitMemory;
+    }
+    busyWaitTainted = false;
+    busyWaitCycles = cycles;
+    System.arraycopy(reg, 0, busyWaitRegisters, 0, reg.length);
+  }
+
+  /* Returns true if reading has no side effects and the value can only change by a write or an event */
+  private boolean isStableRead(int address, AccessMode mode) {
+    if (address < 0 || address + mode.bytes > MAX_MEM) {
+      return false;
+    }
+    int page = pageTypes[address >> 8];
+    if (page == PAGE_RAM || (page == PAGE_FLASH && !isFlashBusy)) {
+      return pageTypes[(address + mode.bytes - 1) >> 8] == page;
+    }
+    if (address < MAX_MEM_IO && memorySegments[address >> 8] instanceof IOSegment ioSegment) {
+      return ioSegment.isReadStable(address, mode);
+    }
+    return false;
+  }
+
+  /* Returns the instruction at pc or null if the CPU was signaled to stop */
+  private DecodeCache.Entry fetchInstruction(int pc) throws EmulationException {
+    if (decodeCacheMode == DecodeCache.Mode.OFF || (pc & 1) != 0 || pc + 4 > MAX_MEM
+        || isFlashBusy || (currentSegment != directMemory && currentSegment != busyWaitMemory)
+        || pageTypes[pc >> 8] != PAGE_FLASH || pageTypes[(pc + 2) >> 8] != PAGE_FLASH) {
+      return decodeInstruction(pc, fetchedInstruction);
+    }
+    DecodeCache.Entry entry = decodeCache.get(pc);
+    if (entry == null) {
+      if (decodeInstruction(pc, fetchedInstruction) == null) {
+        return null;
+      }
+      return decodeCache.put(pc, fetchedInstruction);
+    }
+    if (decodeCacheMode == DecodeCache.Mode.VERIFY) {
+      if (decodeInstruction(pc, fetchedInstruction) == null) {
+        return null;
+      }
+      if (!entry.sameAs(fetchedInstruction)) {
+        throw new EmulationException("Decode cache mismatch at $" + Utils.hex(pc, 4)
+            + ": cached " + Utils.hex16(entry.instruction) + " ext " + Utils.hex16(entry.extWord)
+            + " memory " + Utils.hex16(fetchedInstruction.instruction) + " ext " + Utils.hex16(fetchedInstruction.extWord));
+      }
+    }
+    return isStopping ? null : entry;
+  }
+
+  private DecodeCache.Entry decodeInstruction(int pc, DecodeCache.Entry decoded) throws EmulationException {
+    int instruction = currentSegment.read(pc, AccessMode.WORD, AccessType.EXECUTE);
+    if (isStopping) {
+      return null;
+    }
+    /* check for extension words */
+    if ((instruction & 0xf800) == 0x1800) {
+      decoded.decodeExtension(instruction);
+      instruction = currentSegment.read(pc + 2, AccessMode.WORD, AccessType.EXECUTE);
+    } else {
+      decoded.decodeExtension(0);
+    }
+    decoded.instruction = instruction;
+    return decoded;
+  }
+
   /* returns true if any instruction was emulated - false if CpuOff */
   public int emulateOP(long maxCycles) throws EmulationException {
     int pc = readRegister(PC);
@@ -946,48 +1184,24 @@ public class MSP430Core extends Chip implements MSP430Constants {
       return -1;
     }
 
+    if (busyWaitStart >= 0 && (pc < busyWaitStart || pc > busyWaitEnd)) {
+      stopBusyWait();
+    }
+
     int pcBefore = pc;
-    instruction = currentSegment.read(pc, AccessMode.WORD, AccessType.EXECUTE);
-    if (isStopping) {
+    DecodeCache.Entry decoded = fetchInstruction(pc);
+    if (decoded == null) {
         // Signaled to stop the execution before performing the instruction
         return -2;
     }
-    int ext3_0 = 0;
-    int ext10_7;
-    int extSrc = 0;
-    int extDst = 0;
-    boolean repeatsInDstReg = false;
-    boolean wordx20 = false;
-
-    /* check for extension words */
-    if ((instruction & 0xf800) == 0x1800) {
-        extWord = instruction;
-        ext3_0 = instruction & 0xf; /* bit 3 - 0 - either repeat count or dest 19-16 */
-        ext10_7 = (instruction >> 7) & 0xf; /* bit 10 - 7 - src 19-16 */
-        extSrc = ext10_7 << 16;
-        extDst = ext3_0 << 16;
-        pc += 2;
-
-        // Bit 7 in the extension word indicates that the number of
-        // repeats is found in the register pointed to by ext3_0. If
-        // the bit is 0, ext3_0 contains the number of repeats. If the
-        // bit is 1, ext3_0 contains the register number that holds
-        // the number of repeats.
-        if ((instruction & 0x80) == 0x80) {
-            repeatsInDstReg = true;
-        }
-        // Bit 6 indicates whether the data length mode should
-        // be 20 bits. A one means traditional MSP430 mode; a zero
-        // indicates 20 bit mode. (XXX: there is a reserved data
-        // length mode if this bit is zero and the MSP430 instruction
-        // that follows the extension word also has a zero bit data
-        // length mode.)
-        wordx20 = (instruction & 0x40) == 0;
-
-        instruction = currentSegment.read(pc, AccessMode.WORD, AccessType.EXECUTE);
-    } else {
-        extWord = 0;
-    }
+    instruction = decoded.instruction;
+    extWord = decoded.extWord;
+    int ext3_0 = decoded.ext3_0;
+    int extSrc = decoded.extSrc;
+    int extDst = decoded.extDst;
+    boolean repeatsInDstReg = decoded.repeatsInDstReg;
+    boolean wordx20 = decoded.wordx20;
+    pc += decoded.extSize();
 
     op = instruction >> 12;
     int sp = 0;
@@ -1716,6 +1930,9 @@ public class MSP430Core extends Chip implements MSP430Constants {
       // Perform the Jump
       if (jump) {
         writeRegister(PC, pc + jmpOffset);
+        if (jmpOffset < 0 && busyWaitSkip) {
+          checkBusyWait(pcBefore, pc + jmpOffset, maxCycles);
+        }
       }
       updateStatus = false;
       break;
@@ -2106,10 +2323,15 @@ public class MSP430Core extends Chip implements MSP430Constants {
     return MODE_MAX;
   }
 
-  MapEntry getFunction(MapTable map, int address) {
-    MapEntry function = new MapEntry(MapEntry.TYPE.function, address, 0,
-        "fkn at $" + getAddressAsString(address), null, true);
-    map.setEntry(function);
+  /* Functions called without a map entry. They are kept per CPU since the map is shared by all nodes
+     running the same firmware. */
+  MapEntry getFunction(int address) {
+    MapEntry function = unknownFunctions.get(address);
+    if (function == null) {
+      function = new MapEntry(MapEntry.TYPE.function, address, 0,
+          "fkn at $" + getAddressAsString(address), null, true);
+      unknownFunctions.put(address, function);
+    }
     return function;
   }
 
@@ -2143,6 +2365,7 @@ public class MSP430Core extends Chip implements MSP430Constants {
       buf.append(" Mode: ").append(getModeName(getMode()))
          .append("  ACLK: ").append(aclkFrq).append(" Hz  SMCLK: ").append(smclkFrq).append(" Hz\n")
          .append(" Cycles: ").append(cycles).append("  CPU Cycles: ").append(cpuCycles)
+         .append("  Skipped: ").append(skippedCycles)
          .append("  Time: ").append((long)getTimeMillis()).append(" msec\n");
       buf.append(" Interrupt enabled: ").append(interruptsEnabled).append(" HighestInterrupt: ").append(interruptMax);
       for (int i = 0; i < MAX_INTERRUPT; i++) {
@@ -54,6 +54,16 @@ public interface Profiler {
   void setCPU(MSP430Core cpu);
 
   void profileCall(MapEntry entry, long cycles, int from);
+
+  /**
+   * Profiles a call to an address without looking up its map entry.
+   * Returns false if the profiler needs the map entry, in which case
+   * the call is profiled using {@link #profileCall(MapEntry, long, int)}.
+   */
+  default boolean profileCall(int address, long cycles, int from) {
+    return false;
+  }
+
   void profileReturn(long cycles);
   void profileInterrupt(int vector, long cycles);
   void profileRETI(long cycles);
@@ -42,7 +42,7 @@ import se.sics.mspsim.core.EmulationLogger.WarningType;
 class RAMOffsetSegment implements Memory {
 
     private final MSP430Core core;
-    private final int[] memory;
+    private final byte[] memory;
     private final int offset;
 
     RAMOffsetSegment(MSP430Core core, int offset) {
@@ -57,12 +57,12 @@ class RAMOffsetSegment implements Memory {
         address += offset;
         int val = memory[address] & 0xff;
         if (mode != AccessMode.BYTE) {
-            val |= (memory[address + 1] << 8);
+            val |= ((memory[address + 1] & 0xff) << 8);
             if ((address & 1) != 0) {
                 core.printWarning(WarningType.MISALIGNED_READ, address);
             }
             if (mode == AccessMode.WORD20) {
-                val |= (memory[address + 2] << 16) | (memory[address + 3] << 24);
+                val |= ((memory[address + 2] & 0xff) << 16) | ((memory[address + 3] & 0xff) << 24);
             }
             val &= mode.mask;
         }
@@ -73,15 +73,15 @@ class RAMOffsetSegment implements Memory {
     public void write(int dstAddress, int dst, AccessMode mode)
             throws EmulationException {
         dstAddress += offset;
-        memory[dstAddress] = dst & 0xff;
+        memory[dstAddress] = (byte) dst;
         if (mode != AccessMode.BYTE) {
-            memory[dstAddress + 1] = (dst >> 8) & 0xff;
+            memory[dstAddress + 1] = (byte) (dst >> 8);
             if ((dstAddress & 1) != 0) {
                 core.printWarning(WarningType.MISALIGNED_WRITE, dstAddress);
             }
             if (mode != AccessMode.WORD) {
-                memory[dstAddress + 2] = (dst >> 16) & 0xff;
-                memory[dstAddress + 3] = (dst >> 24) & 0xff;
+                memory[dstAddress + 2] = (byte) (dst >> 16);
+                memory[dstAddress + 3] = (byte) (dst >> 24);
             }
         }
     }
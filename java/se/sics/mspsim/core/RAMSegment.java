@@ -5,7 +5,7 @@ import se.sics.mspsim.core.EmulationLogger.WarningType;
 public class RAMSegment implements Memory {
 
     private final MSP430Core core;
-    private final int[] memory;
+    private final byte[] memory;
 
     public RAMSegment(MSP430Core core) {
         this.core = core;
@@ -16,13 +16,13 @@ public class RAMSegment implements Memory {
     public int read(int address, AccessMode mode, AccessType type) throws EmulationException {
         int val = memory[address] & 0xff;
         if (mode != AccessMode.BYTE) {
-            val |= (memory[address + 1] << 8);
+            val |= ((memory[address + 1] & 0xff) << 8);
             if ((address & 1) != 0) {
                 core.printWarning(WarningType.MISALIGNED_READ, address);
             }
             if (mode == AccessMode.WORD20) {
                 /* will the read really get data from the full word? CHECK THIS */
-                val |= (memory[address + 2] << 16) | (memory[address + 3] << 24);
+                val |= ((memory[address + 2] & 0xff) << 16) | ((memory[address + 3] & 0xff) << 24);
                 val &= 0xfffff;
             } else {
                 val &= 0xffff;
@@ -34,15 +34,15 @@ public class RAMSegment implements Memory {
     @Override
     public void write(int dstAddress, int dst, AccessMode mode) throws EmulationException {
         // assume RAM
-        memory[dstAddress] = dst & 0xff;
+        memory[dstAddress] = (byte) dst;
         if (mode != AccessMode.BYTE) {
-            memory[dstAddress + 1] = (dst >> 8) & 0xff;
+            memory[dstAddress + 1] = (byte) (dst >> 8);
             if ((dstAddress & 1) != 0) {
                 core.printWarning(WarningType.MISALIGNED_WRITE, dstAddress);
             }
             if (mode != AccessMode.WORD) {
-                memory[dstAddress + 2] = (dst >> 16) & 0xff; /* should be 0x0f ?? */
-                memory[dstAddress + 3] = (dst >> 24) & 0xff; /* will be only zeroes*/
+                memory[dstAddress + 2] = (byte) (dst >> 16); /* should be 0x0f ?? */
+                memory[dstAddress + 3] = (byte) (dst >> 24); /* will be only zeroes*/
             }
         }
     }
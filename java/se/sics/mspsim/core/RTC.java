@@ -106,7 +106,7 @@ public class RTC extends IOUnit {
          *           CPU core
          */
         public RTC(MSP430Core cpu, int offset, RtcType r, int intVector) {
-                super("RTC", cpu, cpu.memory, offset);
+                super("RTC", cpu, cpu.ioMemory, offset);
                 type = r;
                 rtcIntVector = intVector;
                 DEBUG = true;
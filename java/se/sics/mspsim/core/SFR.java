@@ -125,6 +125,11 @@ public class SFR extends IOUnit {
     };
   }
 
+  @Override
+  public boolean isReadStable(int address) {
+    return true;
+  }
+
   private void updateIE(int pos, int value) {
     int oldVal = pos == 0 ? ie1 : ie2;
     int change = oldVal ^ value;
@@ -337,6 +337,12 @@ public class USART extends IOUnit implements SFRModule, DMATrigger, USARTSource
     return 0;
   }
 
+  @Override
+  public boolean isReadStable(int address) {
+    /* reading the receive buffer clears the interrupt flag */
+    return address - offset != URXBUF;
+  }
+
   private void updateBaudRate() {
     int div = ubr0 + (ubr1 << 8);
     if (div == 0) {
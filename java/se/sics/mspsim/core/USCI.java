@@ -374,6 +374,16 @@ public class USCI extends IOUnit implements SFRModule, DMATrigger, USARTSource {
     return 0;
   }
 
+  @Override
+  public boolean isReadStable(int address) {
+    if (address == ieAddress || address == ifgAddress) {
+      return true;
+    }
+    /* reading the receive buffer clears the interrupt flag */
+    address = address - offset;
+    return address != UAxRXBUF && address != UBxRXBUF;
+  }
+
   private void updateBaudRate() {
     int div = ubr0 + (ubr1 << 8);
     if (div == 0) {
@@ -41,6 +41,8 @@ package se.sics.mspsim.debug;
 
 import java.io.File;
 import java.util.ArrayList;
+import java.util.Map;
+import java.util.TreeMap;
 import se.sics.mspsim.util.DebugInfo;
 import se.sics.mspsim.util.ELF;
 import se.sics.mspsim.util.ELFDebug;
@@ -103,6 +105,14 @@ public class DwarfReader implements ELFDebug {
 
     private final ArrayList<LineData> lineInfo = new ArrayList<>();
 
+    /* Line lookup index - sorted non-overlapping address ranges with the
+     * line entry that covers each, and the debug info created on first lookup */
+    private int[] rangeStart = new int[0];
+    private int[] rangeEnd = new int[0];
+    private LineEntry[] rangeEntry = new LineEntry[0];
+    private LineData[] rangeData = new LineData[0];
+    private DebugInfo[] rangeInfo = new DebugInfo[0];
+
     public DwarfReader(ELF elfFile) {
         this.elfFile = elfFile;
     }
@@ -118,6 +128,55 @@ public class DwarfReader implements ELFDebug {
                 readLines(sec);
             }
         }
+        buildLineIndex();
+    }
+
+    private record Range(int end, LineEntry entry, LineData data) {}
+
+    /* Builds the lookup index. Where line entries overlap, the first one
+     * in the line tables is used (as a linear search would). */
+    private void buildLineIndex() {
+        TreeMap<Integer, Range> ranges = new TreeMap<>();
+        for (LineData data : lineInfo) {
+            LineEntry[] entries = data.lineEntries;
+            int start = entries[0].address;
+            int end = entries[entries.length - 1].address;
+            /* XXX ignore all line entries starting on address 0 */
+            if (start == 0) continue;
+
+            /* the last entry is not matched (prologue entries) */
+            for (int j = 0; j + 1 < entries.length; j++) {
+                int lo = Math.max(entries[j].address, start);
+                int hi = Math.min(entries[j + 1].address - 1, end);
+                while (lo <= hi) {
+                    Map.Entry<Integer, Range> prev = ranges.floorEntry(lo);
+                    if (prev != null && prev.getValue().end >= lo) {
+                        lo = prev.getValue().end + 1;
+                        continue;
+                    }
+                    Integer next = ranges.higherKey(lo);
+                    int pieceEnd = next == null ? hi : Math.min(hi, next - 1);
+                    ranges.put(lo, new Range(pieceEnd, entries[j], data));
+                    lo = pieceEnd + 1;
+                }
+            }
+        }
+
+        int n = ranges.size();
+        rangeStart = new int[n];
+        rangeEnd = new int[n];
+        rangeEntry = new LineEntry[n];
+        rangeData = new LineData[n];
+        rangeInfo = new DebugInfo[n];
+        int i = 0;
+        for (Map.Entry<Integer, Range> e : ranges.entrySet()) {
+            Range range = e.getValue();
+            rangeStart[i] = e.getKey();
+            rangeEnd[i] = range.end;
+            rangeEntry[i] = range.entry;
+            rangeData[i] = range.data;
+            i++;
+        }
     }
 
     private void readLines(ELFSection sec) {
@@ -420,31 +479,27 @@ public class DwarfReader implements ELFDebug {
     /* Access methods for data... */
     @Override
     public DebugInfo getDebugInfo(int address) {
-      for (LineData data : lineInfo) {
-        int start = data.lineEntries[0].address;
-        int end = data.lineEntries[data.lineEntries.length - 1].address;
-        /* XXX ignore all line entries starting on address 0 */
-        if (start == 0) continue;
-
-        if (address <= end && address >= start) {
-          for (int j = 0; j < data.lineEntries.length; j++) {
-            LineEntry lineEntry = data.lineEntries[j];
-            int startEntry = lineEntry.address;
-            int endEntry;
-            if (j + 1 < data.lineEntries.length) {
-              endEntry = data.lineEntries[j + 1].address - 1;
-            } else {
-              /* do not match prologue entries */
-              continue;
-            }
-            if (address >= startEntry &&
-                    address <= endEntry) {
-              return new DebugInfo(lineEntry.line, null, data.sourceFiles[lineEntry.file - 1], "* not available");
-            }
-          }
+      /* binary search for the last range starting at or before the address */
+      int low = 0;
+      int high = rangeStart.length - 1;
+      while (low <= high) {
+        int mid = (low + high) >>> 1;
+        if (rangeStart[mid] <= address) {
+          low = mid + 1;
+        } else {
+          high = mid - 1;
         }
       }
+      if (high < 0 || address > rangeEnd[high]) {
         return null;
+      }
+      DebugInfo info = rangeInfo[high];
+      if (info == null) {
+        LineEntry lineEntry = rangeEntry[high];
+        info = new DebugInfo(lineEntry.line, null, rangeData[high].sourceFiles[lineEntry.file - 1], "* not available");
+        rangeInfo[high] = info;
+      }
+      return info;
     }
 
     @Override
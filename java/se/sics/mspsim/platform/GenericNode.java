@@ -62,6 +62,7 @@ import se.sics.mspsim.util.ArgumentManager;
 import se.sics.mspsim.util.ComponentRegistry;
 import se.sics.mspsim.util.ConfigManager;
 import se.sics.mspsim.util.ELF;
+import se.sics.mspsim.util.Firmware;
 import se.sics.mspsim.util.IHexReader;
 import se.sics.mspsim.util.MapTable;
 import se.sics.mspsim.util.OperatingModeStatistics;
@@ -81,7 +82,7 @@ public abstract class GenericNode extends Chip implements Runnable {
 
   public static MSP430 makeCPU(MSP430Config config, String firmwareFile) throws IOException {
     ELF elf = null;
-    int[] memory;
+    byte[] memory;
     if (firmwareFile.endsWith("ihex")) { // IHEX Reading.
       memory = IHexReader.readFile(firmwareFile, config.maxMem);
     } else {
@@ -91,6 +92,10 @@ public abstract class GenericNode extends Chip implements Runnable {
     return new MSP430(config, memory, elf);
   }
 
+  public static MSP430 makeCPU(MSP430Config config, Firmware firmware) {
+    return new MSP430(config, firmware.createMemory(config.maxMem), firmware.getELF());
+  }
+
   public GenericNode(String id, MSP430 cpu) {
     super(id, cpu);
     this.cpu = cpu;
@@ -0,0 +1,159 @@
+/*
+ * Copyright (c) 2026, RISE Research Institutes of Sweden AB.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ * 3. Neither the name of the copyright holder nor the names of its
+ *    contributors may be used to endorse or promote products derived
+ *    from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDER AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+ * FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ * COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT,
+ * STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package se.sics.mspsim.profiler;
+
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.TreeMap;
+import se.sics.mspsim.core.MSP430;
+import se.sics.mspsim.util.DebugInfo;
+import se.sics.mspsim.util.ELF;
+import se.sics.mspsim.util.ELFDebug;
+import se.sics.mspsim.util.FunctionIndex;
+
+/**
+ * Code coverage of a firmware, collected from the execution counts of one
+ * or more CPUs running it, and written as an lcov tracefile.
+ * <p>
+ * Counts are kept per instruction address and saturate at 255, which is
+ * enough to tell covered code from uncovered code. Source lines are found
+ * through the debug information of the firmware.
+ */
+public class CodeCoverage {
+
+  private final ELF elf;
+  private final byte[] counts;
+
+  public CodeCoverage(ELF elf, int size) {
+    this.elf = elf;
+    counts = new byte[size];
+  }
+
+  /** Adds the execution counts of a CPU running the firmware. */
+  public void merge(MSP430 cpu) {
+    for (int address = 0; address < counts.length; address++) {
+      int count = cpu.getExecCount(address);
+      if (count > 0) {
+        counts[address] = (byte) Math.min(255, (counts[address] & 0xff) + count);
+      }
+    }
+  }
+
+  public int getCount(int address) {
+    return counts[address] & 0xff;
+  }
+
+  private record Function(int line, String name, int count) {}
+
+  private static final class SourceFile {
+    final TreeMap<Integer, Integer> lines = new TreeMap<>();
+    final ArrayList<Function> functions = new ArrayList<>();
+  }
+
+  private static SourceFile getSourceFile(Map<String, SourceFile> files, DebugInfo info) {
+    String path = info.getPath() == null ? info.getFile() : info.getPath() + info.getFile();
+    return files.computeIfAbsent(path, p -> new SourceFile());
+  }
+
+  /** Writes the coverage in the lcov tracefile format. */
+  public void writeLcov(PrintStream out, String testName) {
+    TreeMap<String, SourceFile> files = new TreeMap<>();
+    ELFDebug debug = elf.getDebug();
+    if (debug != null) {
+      /* all lines with code, then the count of the executed instructions */
+      int[] addresses = debug.getExecutableAddresses().stream().mapToInt(Integer::intValue).toArray();
+      for (DebugInfo info : elf.getDebugInfo(addresses)) {
+        if (info != null) {
+          getSourceFile(files, info).lines.putIfAbsent(info.getLine(), 0);
+        }
+      }
+      int executed = 0;
+      for (byte count : counts) {
+        if (count != 0) {
+          executed++;
+        }
+      }
+      addresses = new int[executed];
+      executed = 0;
+      for (int address = 0; address < counts.length; address++) {
+        if (counts[address] != 0) {
+          addresses[executed++] = address;
+        }
+      }
+      DebugInfo[] infos = elf.getDebugInfo(addresses);
+      for (int i = 0; i < infos.length; i++) {
+        if (infos[i] != null) {
+          getSourceFile(files, infos[i]).lines.merge(infos[i].getLine(), getCount(addresses[i]), Math::max);
+        }
+      }
+    }
+
+    FunctionIndex index = elf.getMap().getFunctionIndex();
+    for (int id = 0; id < index.size(); id++) {
+      int address = index.getAddress(id);
+      DebugInfo info = elf.getDebugInfo(address);
+      if (info != null) {
+        int count = address < counts.length ? getCount(address) : 0;
+        getSourceFile(files, info).functions.add(new Function(info.getLine(), index.getFunction(id).getName(), count));
+      }
+    }
+
+    for (Map.Entry<String, SourceFile> entry : files.entrySet()) {
+      SourceFile file = entry.getValue();
+      out.println("TN:" + (testName == null ? "" : testName));
+      out.println("SF:" + entry.getKey());
+      int functionsHit = 0;
+      for (Function function : file.functions) {
+        out.println("FN:" + function.line + ',' + function.name);
+      }
+      for (Function function : file.functions) {
+        out.println("FNDA:" + function.count + ',' + function.name);
+        if (function.count > 0) {
+          functionsHit++;
+        }
+      }
+      out.println("FNF:" + file.functions.size());
+      out.println("FNH:" + functionsHit);
+      int linesHit = 0;
+      for (Map.Entry<Integer, Integer> line : file.lines.entrySet()) {
+        out.println("DA:" + line.getKey() + ',' + line.getValue());
+        if (line.getValue() > 0) {
+          linesHit++;
+        }
+      }
+      out.println("LF:" + file.lines.size());
+      out.println("LH:" + linesHit);
+      out.println("end_of_record");
+    }
+  }
+
+}
@@ -0,0 +1,570 @@
+/*
+ * Copyright (c) 2026, RISE Research Institutes of Sweden AB.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ * 3. Neither the name of the copyright holder nor the names of its
+ *    contributors may be used to endorse or promote products derived
+ *    from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDER AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+ * FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ * COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT,
+ * STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package se.sics.mspsim.profiler;
+
+import java.io.PrintStream;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Properties;
+import java.util.regex.Pattern;
+import se.sics.mspsim.core.MSP430Core;
+import se.sics.mspsim.core.Profiler;
+import se.sics.mspsim.util.ArrayUtils;
+import se.sics.mspsim.util.FunctionIndex;
+import se.sics.mspsim.util.MapEntry;
+import se.sics.mspsim.util.MapTable;
+import se.sics.mspsim.util.Utils;
+
+/**
+ * Call profiler that keeps its statistics in primitive arrays indexed by
+ * the dense function IDs of a {@link FunctionIndex}.
+ * <p>
+ * Calls are tracked on a fixed-size shadow call stack and accumulated in a
+ * call tree, so nothing is allocated per call once a call path has been
+ * seen. The call tree can be written in the "folded stacks" format used by
+ * flame graph tools, and the profiles of several motes running the same
+ * firmware can be merged into one.
+ */
+public class FunctionProfiler implements Profiler {
+
+  private static final int MAX_DEPTH = 256;
+  private static final int IRQ_VECTORS = 64;
+  private static final int ROOT = 0;
+
+  private MSP430Core cpu;
+  private MapTable map;
+  private FunctionIndex index;
+  private int unknownID;
+  private int irqBase;
+  private int maxVector = -1;
+
+  /* per function statistics */
+  private long[] calls;
+  private long[] cycles;
+  private long[] exclusiveCycles;
+
+  /* shadow call stack */
+  private final int[] stackFunction = new int[MAX_DEPTH];
+  private final int[] stackNode = new int[MAX_DEPTH];
+  private final int[] stackFrom = new int[MAX_DEPTH];
+  private final long[] stackStart = new long[MAX_DEPTH];
+  private int depth;
+  /* calls deeper than the shadow stack are counted but not tracked */
+  private int lostFrames;
+  private long lastCycles;
+
+  /* call tree - node 0 is the root */
+  private int nodeCount = 1;
+  private int[] nodeParent = new int[256];
+  private int[] nodeFunction = new int[256];
+  private long[] nodeCalls = new long[256];
+  private long[] nodeCycles = new long[256];
+  /* open addressing table from (parent, function) to node + 1 */
+  private int[] childTable = new int[512];
+
+  private PrintStream logger;
+  private CallListener[] callListeners;
+  private final CallEntry callEntry = new CallEntry();
+
+  public FunctionProfiler() {
+    nodeFunction[ROOT] = -1;
+  }
+
+  public FunctionProfiler(MapTable map) {
+    this();
+    this.map = map;
+  }
+
+  @Override
+  public void setCPU(MSP430Core cpu) {
+    this.cpu = cpu;
+    maxVector = cpu.config.maxInterruptVector;
+  }
+
+  private boolean bind() {
+    if (map == null && cpu != null) {
+      map = cpu.getRegistry().getComponent(MapTable.class);
+    }
+    if (map == null) {
+      return false;
+    }
+    setIndex(map.getFunctionIndex());
+    return true;
+  }
+
+  private void setIndex(FunctionIndex index) {
+    this.index = index;
+    unknownID = index.size();
+    irqBase = unknownID + 1;
+    calls = new long[irqBase + IRQ_VECTORS];
+    cycles = new long[irqBase + IRQ_VECTORS];
+    exclusiveCycles = new long[irqBase + IRQ_VECTORS];
+  }
+
+  private long now() {
+    return cpu != null ? cpu.cpuCycles : lastCycles;
+  }
+
+  @Override
+  public boolean profileCall(int address, long cycles, int from) {
+    if (index != null || bind()) {
+      int id = index.getFunctionID(address);
+      enter(id < 0 ? unknownID : id, from);
+    }
+    return true;
+  }
+
+  @Override
+  public void profileCall(MapEntry entry, long cycles, int from) {
+    profileCall(entry.getAddress(), cycles, from);
+  }
+
+  @Override
+  public void profileReturn(long cycles) {
+    if (index == null) {
+      return;
+    }
+    long now = now();
+    account(now);
+    if (lostFrames > 0) {
+      lostFrames--;
+    } else if (depth > 0 && stackFunction[depth - 1] < irqBase) {
+      leave(now);
+    }
+  }
+
+  @Override
+  public void profileInterrupt(int vector, long cycles) {
+    if (index != null || bind()) {
+      enter(vector < IRQ_VECTORS ? irqBase + vector : unknownID, cpu.getPC());
+    }
+  }
+
+  @Override
+  public void profileRETI(long cycles) {
+    if (index == null) {
+      return;
+    }
+    long now = now();
+    account(now);
+    int frame = depth - 1;
+    while (frame >= 0 && stackFunction[frame] < irqBase) {
+      frame--;
+    }
+    if (frame >= 0) {
+      lostFrames = 0;
+      while (depth > frame) {
+        leave(now);
+      }
+    }
+  }
+
+  /* attribute the cycles since the last event to the current function */
+  private void account(long now) {
+    long elapsed = now - lastCycles;
+    lastCycles = now;
+    if (depth > 0) {
+      exclusiveCycles[stackFunction[depth - 1]] += elapsed;
+      nodeCycles[stackNode[depth - 1]] += elapsed;
+    }
+  }
+
+  private void enter(int id, int from) {
+    long now = now();
+    account(now);
+    if (depth == MAX_DEPTH) {
+      lostFrames++;
+      return;
+    }
+    int node = getChild(depth > 0 ? stackNode[depth - 1] : ROOT, id);
+    stackFunction[depth] = id;
+    stackNode[depth] = node;
+    stackFrom[depth] = from;
+    stackStart[depth] = now;
+    depth++;
+
+    PrintStream logger = this.logger;
+    if (logger != null) {
+      if (id >= irqBase) {
+        logger.println("----- Interrupt vector " + (id - irqBase) + " start execution -----");
+      } else {
+        printSpace(logger, (depth - 1) * 2);
+        logger.println("Call to " + getName(id));
+      }
+    }
+    CallListener[] listeners = callListeners;
+    if (listeners != null && id < unknownID) {
+      callEntry.function = index.getFunction(id);
+      callEntry.fromPC = from;
+      callEntry.cycles = now;
+      for (CallListener listener : listeners) {
+        listener.functionCall(this, callEntry);
+      }
+    }
+  }
+
+  private void leave(long now) {
+    int top = --depth;
+    int id = stackFunction[top];
+    long elapsed = now - stackStart[top];
+    calls[id]++;
+    cycles[id] += elapsed;
+    nodeCalls[stackNode[top]]++;
+
+    PrintStream logger = this.logger;
+    if (logger != null) {
+      if (id >= irqBase) {
+        logger.println("----- Interrupt vector " + (id - irqBase) + " returned - elapsed: " + elapsed);
+      } else {
+        printSpace(logger, top * 2);
+        logger.println("return from " + getName(id) + " elapsed: " + elapsed);
+      }
+    }
+    CallListener[] listeners = callListeners;
+    if (listeners != null && id < unknownID) {
+      callEntry.function = index.getFunction(id);
+      callEntry.fromPC = stackFrom[top];
+      callEntry.cycles = stackStart[top];
+      for (CallListener listener : listeners) {
+        listener.functionReturn(this, callEntry);
+      }
+    }
+  }
+
+  private static int hash(int parent, int function) {
+    int h = parent * 0x9e3779b1 + function;
+    return h ^ (h >>> 16);
+  }
+
+  private int getChild(int parent, int function) {
+    int mask = childTable.length - 1;
+    int slot = hash(parent, function) & mask;
+    int entry;
+    while ((entry = childTable[slot]) != 0) {
+      int node = entry - 1;
+      if (nodeParent[node] == parent && nodeFunction[node] == function) {
+        return node;
+      }
+      slot = (slot + 1) & mask;
+    }
+    return addNode(parent, function);
+  }
+
+  private int addNode(int parent, int function) {
+    if (nodeCount == nodeParent.length) {
+      int size = nodeCount * 2;
+      nodeParent = Arrays.copyOf(nodeParent, size);
+      nodeFunction = Arrays.copyOf(nodeFunction, size);
+      nodeCalls = Arrays.copyOf(nodeCalls, size);
+      nodeCycles = Arrays.copyOf(nodeCycles, size);
+    }
+    int node = nodeCount++;
+    nodeParent[node] = parent;
+    nodeFunction[node] = function;
+    if (nodeCount * 2 > childTable.length) {
+      childTable = new int[childTable.length * 2];
+      for (int i = 1; i < nodeCount; i++) {
+        insertNode(i);
+      }
+    } else {
+      insertNode(node);
+    }
+    return node;
+  }
+
+  private void insertNode(int node) {
+    int mask = childTable.length - 1;
+    int slot = hash(nodeParent[node], nodeFunction[node]) & mask;
+    while (childTable[slot] != 0) {
+      slot = (slot + 1) & mask;
+    }
+    childTable[slot] = node + 1;
+  }
+
+  private String getName(int id) {
+    if (id < unknownID) {
+      return index.getFunction(id).getName();
+    }
+    return id == unknownID ? "[unknown]" : "[irq:" + (id - irqBase) + ']';
+  }
+
+  @Override
+  public void resetProfile() {
+    clearProfile();
+    depth = 0;
+    lostFrames = 0;
+  }
+
+  @Override
+  public void clearProfile() {
+    if (index == null) {
+      return;
+    }
+    long now = now();
+    Arrays.fill(calls, 0);
+    Arrays.fill(cycles, 0);
+    Arrays.fill(exclusiveCycles, 0);
+    Arrays.fill(nodeCalls, 0);
+    Arrays.fill(nodeCycles, 0);
+    /* calls in progress are measured from now */
+    Arrays.fill(stackStart, 0, depth, now);
+    lastCycles = now;
+  }
+
+  /**
+   * Adds the statistics of another profiler to this one. Functions are
+   * matched by address if the profilers use different firmware maps.
+   */
+  public void merge(FunctionProfiler other) {
+    if (other.index == null) {
+      return;
+    }
+    if (index == null) {
+      setIndex(other.index);
+    }
+    int[] ids = new int[other.calls.length];
+    for (int id = 0; id < ids.length; id++) {
+      ids[id] = other.index == index ? id : mapID(other, id);
+      calls[ids[id]] += other.calls[id];
+      cycles[ids[id]] += other.cycles[id];
+      exclusiveCycles[ids[id]] += other.exclusiveCycles[id];
+    }
+    /* parents are always created before their children */
+    int[] nodes = new int[other.nodeCount];
+    for (int n = 1; n < other.nodeCount; n++) {
+      int node = getChild(nodes[other.nodeParent[n]], ids[other.nodeFunction[n]]);
+      nodes[n] = node;
+      nodeCalls[node] += other.nodeCalls[n];
+      nodeCycles[node] += other.nodeCycles[n];
+    }
+    maxVector = Math.max(maxVector, other.maxVector);
+  }
+
+  private int mapID(FunctionProfiler other, int id) {
+    if (id >= other.irqBase) {
+      return irqBase + id - other.irqBase;
+    }
+    if (id < other.unknownID) {
+      int mapped = index.getFunctionID(other.index.getAddress(id));
+      if (mapped >= 0) {
+        return mapped;
+      }
+    }
+    return unknownID;
+  }
+
+  /** Returns a new profiler with the merged statistics of the given profilers. */
+  public static FunctionProfiler merge(Collection<FunctionProfiler> profilers) {
+    FunctionProfiler total = new FunctionProfiler();
+    for (FunctionProfiler profiler : profilers) {
+      total.merge(profiler);
+    }
+    return total;
+  }
+
+  /**
+   * Prints the exclusive cycles of each call path in the folded stacks
+   * format, one "caller;callee cycles" line per path.
+   */
+  public void printFoldedStacks(PrintStream out) {
+    StringBuilder path = new StringBuilder();
+    for (int node = 1; node < nodeCount; node++) {
+      if (nodeCycles[node] > 0) {
+        path.setLength(0);
+        appendPath(path, node);
+        out.print(path);
+        out.print(' ');
+        out.println(nodeCycles[node]);
+      }
+    }
+  }
+
+  private void appendPath(StringBuilder path, int node) {
+    int parent = nodeParent[node];
+    if (parent != ROOT) {
+      appendPath(path, parent);
+      path.append(';');
+    }
+    path.append(getName(nodeFunction[node]));
+  }
+
+  @Override
+  public void printProfile(PrintStream out) {
+    printProfile(out, new Properties());
+  }
+
+  @Override
+  public void printProfile(PrintStream out, Properties parameters) {
+    String functionNameRegexp = parameters.getProperty(PARAM_FUNCTION_NAME_REGEXP);
+    String profSort = parameters.getProperty(PARAM_SORT_MODE);
+    boolean profCallers = parameters.getProperty(PARAM_PROFILE_CALLERS) != null;
+    Pattern pattern = null;
+
+    out.println("************************* Profile Data **************************************");
+    out.println("Function                              Calls    Average       Total  Exclusive");
+    if (index == null) {
+      return;
+    }
+    if (functionNameRegexp != null && !functionNameRegexp.isEmpty()) {
+      pattern = Pattern.compile(functionNameRegexp);
+    }
+    Integer[] ids = new Integer[irqBase];
+    int count = 0;
+    for (int id = 0; id < irqBase; id++) {
+      if (calls[id] > 0 && (pattern == null || pattern.matcher(getName(id)).find())) {
+        ids[count++] = id;
+      }
+    }
+    Arrays.sort(ids, 0, count, getComparator(profSort));
+    for (int i = 0; i < count; i++) {
+      int id = ids[i];
+      String functionName = getName(id);
+      String callS = String.valueOf(calls[id]);
+      String avgS = String.valueOf(cycles[id] / calls[id]);
+      String cyclesS = String.valueOf(cycles[id]);
+      String exCyclesS = String.valueOf(exclusiveCycles[id]);
+      out.print(functionName);
+      printSpace(out, 43 - functionName.length() - callS.length());
+      out.print(callS);
+      out.print(' ');
+      printSpace(out, 10 - avgS.length());
+      out.print(avgS);
+      out.print(' ');
+      printSpace(out, 11 - cyclesS.length());
+      out.print(cyclesS);
+      printSpace(out, 11 - exCyclesS.length());
+      out.println(exCyclesS);
+      if (profCallers) {
+        printCallers(id, out);
+      }
+    }
+    if (pattern == null) {
+      out.println("********** Profile IRQ **************************");
+      out.println("Vector          Average    Calls  Tot.Cycles");
+      for (int i = 0; i <= maxVector; i++) {
+        long n = calls[irqBase + i];
+        long total = cycles[irqBase + i];
+        out.print((i < 10 ? "0" : "") + i + "               ");
+        out.printf("%4d ", n > 0 ? total / n : 0);
+        out.printf("%8d   %8d", n, total);
+        out.println();
+      }
+    }
+    if (lostFrames > 0) {
+      out.println("Call stack overflow: " + lostFrames + " calls not tracked");
+    }
+  }
+
+  private Comparator<Integer> getComparator(String modeS) {
+    if ("exclusive".equalsIgnoreCase(modeS)) {
+      return (o1, o2) -> Long.compare(exclusiveCycles[o2], exclusiveCycles[o1]);
+    } else if ("calls".equalsIgnoreCase(modeS)) {
+      return (o1, o2) -> Long.compare(calls[o2], calls[o1]);
+    } else if ("average".equalsIgnoreCase(modeS)) {
+      return (o1, o2) -> Long.compare(cycles[o2] / calls[o2], cycles[o1] / calls[o1]);
+    } else if ("function".equalsIgnoreCase(modeS)) {
+      return Comparator.comparing(this::getName);
+    }
+    return (o1, o2) -> Long.compare(cycles[o2], cycles[o1]);
+  }
+
+  private void printCallers(int id, PrintStream out) {
+    long[] callers = new long[calls.length];
+    for (int node = 1; node < nodeCount; node++) {
+      int parent = nodeParent[node];
+      if (nodeFunction[node] == id && parent != ROOT) {
+        callers[nodeFunction[parent]] += nodeCalls[node];
+      }
+    }
+    Integer[] ids = new Integer[callers.length];
+    int count = 0;
+    for (int caller = 0; caller < callers.length; caller++) {
+      if (callers[caller] > 0) {
+        ids[count++] = caller;
+      }
+    }
+    Arrays.sort(ids, 0, count, (o1, o2) -> Long.compare(callers[o2], callers[o1]));
+    for (int i = 0; i < count; i++) {
+      String callS = String.valueOf(callers[ids[i]]);
+      printSpace(out, 12 - callS.length());
+      out.print(callS);
+      printSpace(out, 2);
+      out.println(getName(ids[i]));
+    }
+  }
+
+  private static void printSpace(PrintStream out, int len) {
+    for (int i = 0; i < len; i++) {
+      out.print(' ');
+    }
+  }
+
+  @Override
+  public void printStackTrace(PrintStream out) {
+    int pc = cpu.getPC();
+    MapEntry function = index == null ? null : index.getFunctionAt(pc);
+    out.println("Stack Trace: number of calls: " + depth
+        + " PC: $" + Utils.hex(pc, 5) + (function == null ? "" : " in " + function.getInfo()));
+    for (int i = depth - 1; i >= 0; i--) {
+      int id = stackFunction[i];
+      if (id >= irqBase) {
+        out.println(" *** Interrupt " + (id - irqBase) + " from PC: $" + Utils.hex(stackFrom[i], 5));
+      } else {
+        out.println("  " + getCall(depth - i - 1)
+            + " called from PC: $" + Utils.hex(stackFrom[i], 5)
+            + " (elapsed: " + (cpu.cpuCycles - stackStart[i]) + ')');
+      }
+    }
+  }
+
+  @Override
+  public void setLogger(PrintStream out) {
+    logger = out;
+  }
+
+  @Override
+  public synchronized void addCallListener(CallListener listener) {
+    callListeners = ArrayUtils.add(CallListener.class, callListeners, listener);
+  }
+
+  @Override
+  public synchronized void removeCallListener(CallListener listener) {
+    callListeners = ArrayUtils.remove(callListeners, listener);
+  }
+
+  @Override
+  public String getCall(int i) {
+    int id = stackFunction[depth - i - 1];
+    return id < unknownID ? index.getFunction(id).getInfo() : getName(id);
+  }
+
+}
@@ -0,0 +1,152 @@
+/*
+ * Copyright (c) 2026, RISE Research Institutes of Sweden AB.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ * 3. Neither the name of the copyright holder nor the names of its
+ *    contributors may be used to endorse or promote products derived
+ *    from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDER AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+ * FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ * COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT,
+ * STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package se.sics.mspsim.profiler;
+
+import java.io.PrintStream;
+import java.util.Arrays;
+import se.sics.mspsim.util.FunctionIndex;
+
+/**
+ * Histogram of sampled program counters per function.
+ * <p>
+ * Samples are counted in an array indexed by the dense function IDs of a
+ * {@link FunctionIndex}, together with the deepest stack seen in each
+ * function. Histograms of motes running the same or similar firmware can
+ * be merged.
+ */
+public class PCHistogram {
+
+  private final FunctionIndex index;
+  private final int unknownID;
+  private final int sleepID;
+  private final long[] samples;
+  private final int[] maxStack;
+  private long total;
+
+  public PCHistogram(FunctionIndex index) {
+    this.index = index;
+    unknownID = index.size();
+    sleepID = unknownID + 1;
+    samples = new long[sleepID + 1];
+    maxStack = new int[sleepID + 1];
+  }
+
+  /**
+   * Adds a sample of the program counter and the current stack usage in
+   * bytes, or -1 if the stack is not sampled.
+   */
+  public void addSample(int pc, int stack) {
+    int id = index.getFunctionID(pc);
+    add(id < 0 ? unknownID : id, 1, stack);
+  }
+
+  /** Adds a sample taken while the CPU was in a low power mode. */
+  public void addSleepSample() {
+    add(sleepID, 1, -1);
+  }
+
+  private void add(int id, long count, int stack) {
+    samples[id] += count;
+    total += count;
+    if (stack > maxStack[id]) {
+      maxStack[id] = stack;
+    }
+  }
+
+  public FunctionIndex getFunctionIndex() {
+    return index;
+  }
+
+  public long getSampleCount() {
+    return total;
+  }
+
+  /**
+   * Adds the samples of another histogram to this one. Functions are
+   * matched by address if the histograms use different firmware maps.
+   */
+  public void merge(PCHistogram other) {
+    for (int id = 0; id < other.samples.length; id++) {
+      if (other.samples[id] > 0) {
+        add(mapID(other, id), other.samples[id], other.maxStack[id]);
+      }
+    }
+  }
+
+  private int mapID(PCHistogram other, int id) {
+    if (id == other.sleepID) {
+      return sleepID;
+    }
+    if (other.index == index) {
+      return id;
+    }
+    if (id < other.unknownID) {
+      int mapped = index.getFunctionID(other.index.getAddress(id));
+      if (mapped >= 0) {
+        return mapped;
+      }
+    }
+    return unknownID;
+  }
+
+  private String getName(int id) {
+    if (id < unknownID) {
+      return index.getFunction(id).getName();
+    }
+    return id == unknownID ? "[unknown]" : "[sleep]";
+  }
+
+  public void printHistogram(PrintStream out) {
+    out.println("************************* PC Samples ****************************************");
+    out.println("Function                            Samples  Percent  MaxStack");
+    Integer[] ids = new Integer[samples.length];
+    int count = 0;
+    for (int id = 0; id < samples.length; id++) {
+      if (samples[id] > 0) {
+        ids[count++] = id;
+      }
+    }
+    Arrays.sort(ids, 0, count, (o1, o2) -> Long.compare(samples[o2], samples[o1]));
+    for (int i = 0; i < count; i++) {
+      int id = ids[i];
+      String functionName = getName(id);
+      String samplesS = String.valueOf(samples[id]);
+      out.print(functionName);
+      for (int s = 43 - functionName.length() - samplesS.length(); s > 0; s--) {
+        out.print(' ');
+      }
+      out.print(samplesS);
+      out.printf(" %7.2f%%  %8d%n", 100.0 * samples[id] / total, maxStack[id]);
+    }
+    out.println("Total samples: " + total);
+  }
+
+}
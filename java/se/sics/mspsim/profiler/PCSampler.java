@@ -0,0 +1,140 @@
+/*
+ * Copyright (c) 2026, RISE Research Institutes of Sweden AB.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ * 3. Neither the name of the copyright holder nor the names of its
+ *    contributors may be used to endorse or promote products derived
+ *    from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDER AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+ * FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ * COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT,
+ * STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package se.sics.mspsim.profiler;
+
+import se.sics.mspsim.core.Chip;
+import se.sics.mspsim.core.MSP430Constants;
+import se.sics.mspsim.core.MSP430Core;
+import se.sics.mspsim.core.TimeEvent;
+import se.sics.mspsim.util.MapTable;
+
+/**
+ * Statistical profiler that samples the program counter every N cycles.
+ * <p>
+ * Unlike the call profilers nothing is done per instruction or call: a
+ * cycle event stores the program counter, and optionally the stack usage,
+ * in a ring buffer that is folded into a {@link PCHistogram} when full.
+ * The sampler is a chip so that sampling continues after a CPU reset.
+ */
+public class PCSampler extends Chip {
+
+  private static final int BUFFER_SIZE = 4096;
+  private static final int SLEEP = -1;
+
+  private final PCHistogram histogram;
+  private final int stackStartAddress;
+  private final int[] pcBuffer = new int[BUFFER_SIZE];
+  private final int[] stackBuffer;
+  private int count;
+  private long interval;
+
+  private final TimeEvent sampleEvent = new TimeEvent(0, "PC Sampler") {
+    @Override
+    public void execute(long t) {
+      sample();
+      cpu.scheduleCycleEvent(this, t + interval);
+    }
+  };
+
+  /**
+   * Creates a sampler for the CPU. The stack usage is sampled if requested
+   * and the map table knows the start of the stack.
+   */
+  public PCSampler(MSP430Core cpu, MapTable map, boolean sampleStack) {
+    super("pcsampler", "PC Sampler", cpu);
+    histogram = new PCHistogram(map.getFunctionIndex());
+    stackStartAddress = map.stackStartAddress;
+    stackBuffer = sampleStack && stackStartAddress >= 0 ? new int[BUFFER_SIZE] : null;
+  }
+
+  /** Starts sampling every interval CPU cycles. */
+  public void start(long interval) {
+    if (interval <= 0) {
+      throw new IllegalArgumentException("sample interval must be positive: " + interval);
+    }
+    this.interval = interval;
+    sampleEvent.remove();
+    cpu.scheduleCycleEvent(sampleEvent, cpu.cycles + interval);
+  }
+
+  public void stop() {
+    interval = 0;
+    sampleEvent.remove();
+  }
+
+  @Override
+  public void notifyReset() {
+    /* the CPU removes all events at reset */
+    if (interval > 0) {
+      cpu.scheduleCycleEvent(sampleEvent, cpu.cycles + interval);
+    }
+  }
+
+  private void sample() {
+    boolean sleeping = cpu.getMode() != MSP430Constants.MODE_ACTIVE;
+    pcBuffer[count] = sleeping ? SLEEP : cpu.getPC();
+    if (stackBuffer != null) {
+      stackBuffer[count] = (stackStartAddress - cpu.readRegister(MSP430Constants.SP)) & 0xffff;
+    }
+    if (++count == BUFFER_SIZE) {
+      flush();
+    }
+  }
+
+  private void flush() {
+    for (int i = 0; i < count; i++) {
+      if (pcBuffer[i] == SLEEP) {
+        histogram.addSleepSample();
+      } else {
+        histogram.addSample(pcBuffer[i], stackBuffer == null ? -1 : stackBuffer[i]);
+      }
+    }
+    count = 0;
+  }
+
+  @Override
+  public int getModeMax() {
+    return 0;
+  }
+
+  @Override
+  public String info() {
+    return (interval > 0 ? "Sampling every " + interval + " cycles" : "Stopped")
+        + ", " + (histogram.getSampleCount() + count) + " samples";
+  }
+
+  /** Returns the histogram of all samples taken so far. */
+  public PCHistogram getHistogram() {
+    flush();
+    return histogram;
+  }
+
+}
@@ -55,6 +55,7 @@ import se.sics.mspsim.core.Profiler;
 import se.sics.mspsim.profiler.CallEntry.CallCounter;
 import se.sics.mspsim.util.ArrayUtils;
 import se.sics.mspsim.util.MapEntry;
+import se.sics.mspsim.util.MapTable;
 import se.sics.mspsim.util.StackMonitor;
 import se.sics.mspsim.util.Utils;
 
@@ -364,8 +365,11 @@ public class SimpleProfiler implements Profiler, EventListener {
   @Override
   public void printStackTrace(PrintStream out) {
     int stackCount = cSP;
+    int pc = cpu.getPC();
+    MapTable map = cpu.getRegistry().getComponent(MapTable.class);
+    MapEntry function = map == null ? null : map.getFunctionIndex().getFunctionAt(pc);
     out.println("Stack Trace: number of calls: " + stackCount
-        + " PC: $" + Utils.hex(cpu.getPC(), 5));
+        + " PC: $" + Utils.hex(pc, 5) + (function == null ? "" : " in " + function.getInfo()));
     for (int i = 0; i < stackCount; i++) {
       CallEntry call = callStack[stackCount - i - 1];
       out.println("  " + call.function.getInfo()
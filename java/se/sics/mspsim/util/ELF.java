@@ -81,6 +81,7 @@ public class ELF {
   public ELFSection dbgStabStr;
 
   private ELFDebug debug;
+  private MapTable map;
 
   public ELF(byte[] data) throws ELFException {
     elfData = data;
@@ -280,8 +281,8 @@ public class ELF {
     }
   }
 
-  public int[] loadPrograms(int size) {
-    var memory = new int[size];
+  public byte[] loadPrograms(int size) {
+    var memory = new byte[size];
     for (int i = 0, n = phnum; i < n; i++) {
       // paddr or vaddr???
       loadBytes(memory, programs[i].offset, programs[i].paddr,
@@ -290,14 +291,14 @@ public class ELF {
     return memory;
   }
 
-  private void loadBytes(int[] memory, int offset, int addr, int len,
+  private void loadBytes(byte[] memory, int offset, int addr, int len,
                          int fill) {
     if (DEBUG) {
       System.out.println("Loading " + len + " bytes into " +
              Integer.toString(addr, 16) + " fill " + fill);
     }
     for (int i = 0; i < len; i++) {
-      memory[addr++] = elfData[offset++] & 0xff;
+      memory[addr++] = elfData[offset++];
     }
     if (fill > len) {
       int n = fill - len;
@@ -321,6 +322,13 @@ public class ELF {
       return null;
   }
 
+  public DebugInfo[] getDebugInfo(int[] addresses) {
+      if (debug != null) {
+          return debug.getDebugInfo(addresses);
+      }
+      return new DebugInfo[addresses.length];
+  }
+
   public String lookupFile(int address) {
     if (debug != null) {
         DebugInfo di = debug.getDebugInfo(address);
@@ -336,7 +344,18 @@ public class ELF {
     return null;
   }
 
-  public MapTable getMap() {
+  /**
+   * Returns the symbol map of the firmware. The map is read once and
+   * shared by all users of this ELF.
+   */
+  public synchronized MapTable getMap() {
+    if (map == null) {
+      map = readMap();
+    }
+    return map;
+  }
+
+  private MapTable readMap() {
     MapTable map = new MapTable();
     int sAddrHighest = -1;
     boolean foundEnd = false;
@@ -399,7 +418,7 @@ public class ELF {
           if (file == null) {
             file = currentFile;
           }
-          map.setEntry(new MapEntry(MapEntry.TYPE.function, sAddr, 0, sn, file,
+          map.setEntry(new MapEntry(MapEntry.TYPE.function, sAddr, size, sn, file,
               bind == ELFSection.SYMBIND_LOCAL));
         } else if (type == ELFSection.SYMTYPE_OBJECT) {
           String file = lookupFile(sAddr);
@@ -44,6 +44,15 @@ public interface ELFDebug {
 
   DebugInfo getDebugInfo(int address);
 
+  /* Looks up several addresses at once - null for addresses without debug info */
+  default DebugInfo[] getDebugInfo(int[] addresses) {
+    DebugInfo[] infos = new DebugInfo[addresses.length];
+    for (int i = 0; i < addresses.length; i++) {
+      infos[i] = getDebugInfo(addresses[i]);
+    }
+    return infos;
+  }
+
   ArrayList<Integer> getExecutableAddresses();
 
   String[] getSourceFiles();
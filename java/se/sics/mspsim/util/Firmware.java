@@ -0,0 +1,117 @@
+/*
+ * Copyright (c) 2026, RISE Research Institutes of Sweden AB.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ * 3. Neither the name of the copyright holder nor the names of its
+ *    contributors may be used to endorse or promote products derived
+ *    from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDER AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+ * FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ * COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT,
+ * STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package se.sics.mspsim.util;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.ref.SoftReference;
+import java.nio.file.Files;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.HashMap;
+
+/**
+ * A parsed ELF firmware that can be shared by all nodes running it.
+ * <p>
+ * Firmwares are cached by canonical path. A cached firmware is reused while
+ * the file keeps its modification time and size, or when its contents still
+ * hash to the same digest. The symbol map and debug information are parsed
+ * once and the initial memory image is only loaded once per memory size.
+ */
+public final class Firmware {
+
+  private record CacheEntry(long lastModified, long length, byte[] digest,
+                            SoftReference<Firmware> firmware) {}
+
+  private static final HashMap<File, CacheEntry> cache = new HashMap<>();
+
+  private final File file;
+  private final ELF elf;
+  private final MapTable map;
+  private byte[] image;
+
+  private Firmware(File file, ELF elf) {
+    this.file = file;
+    this.elf = elf;
+    this.map = elf.getMap();
+  }
+
+  public static Firmware load(String fileName) throws IOException {
+    var file = new File(fileName).getCanonicalFile();
+    long lastModified = file.lastModified();
+    long length = file.length();
+    synchronized (cache) {
+      var entry = cache.get(file);
+      var firmware = entry == null ? null : entry.firmware().get();
+      if (firmware != null && entry.lastModified() == lastModified && entry.length() == length) {
+        return firmware;
+      }
+      byte[] data = Files.readAllBytes(file.toPath());
+      byte[] digest = digest(data);
+      if (firmware == null || !Arrays.equals(entry.digest(), digest)) {
+        firmware = new Firmware(file, new ELF(data));
+      }
+      cache.put(file, new CacheEntry(lastModified, length, digest, new SoftReference<>(firmware)));
+      return firmware;
+    }
+  }
+
+  private static byte[] digest(byte[] data) {
+    try {
+      return MessageDigest.getInstance("SHA-256").digest(data);
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException("SHA-256 not available", e);
+    }
+  }
+
+  public File getFile() {
+    return file;
+  }
+
+  public ELF getELF() {
+    return elf;
+  }
+
+  public MapTable getMap() {
+    return map;
+  }
+
+  /**
+   * Returns a new memory array of the given size with the firmware programs loaded.
+   */
+  public synchronized byte[] createMemory(int size) {
+    if (image == null || image.length != size) {
+      image = elf.loadPrograms(size);
+    }
+    return image.clone();
+  }
+}
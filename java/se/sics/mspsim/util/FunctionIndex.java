@@ -0,0 +1,122 @@
+/*
+ * Copyright (c) 2026, RISE Research Institutes of Sweden AB.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ * 3. Neither the name of the copyright holder nor the names of its
+ *    contributors may be used to endorse or promote products derived
+ *    from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDER AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+ * FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ * COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT,
+ * STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package se.sics.mspsim.util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+
+/**
+ * Immutable index of the functions in a {@link MapTable}, sorted by address.
+ * <p>
+ * Functions are numbered with dense IDs from 0 to size() - 1 in address
+ * order, so per-function data can be kept in arrays. A function covers the
+ * addresses from its start up to its size, or to the next function if the
+ * size is unknown. Several symbols at the same address share the ID of the
+ * one that {@link MapTable#getEntry(int)} returns.
+ */
+public final class FunctionIndex {
+
+  private final int[] start;
+  private final int[] end; /* exclusive */
+  private final MapEntry[] functions;
+
+  FunctionIndex(MapEntry[] entries) {
+    ArrayList<MapEntry> list = new ArrayList<>();
+    for (MapEntry entry : entries) {
+      if (entry.getType() == MapEntry.TYPE.function) {
+        list.add(entry);
+      }
+    }
+    /* stable sort - the last entry at an address is the one to keep */
+    list.sort(Comparator.comparingInt(MapEntry::getAddress));
+    int n = 0;
+    MapEntry[] sorted = new MapEntry[list.size()];
+    for (MapEntry entry : list) {
+      if (n > 0 && sorted[n - 1].getAddress() == entry.getAddress()) {
+        sorted[n - 1] = entry;
+      } else {
+        sorted[n++] = entry;
+      }
+    }
+
+    functions = Arrays.copyOf(sorted, n);
+    start = new int[n];
+    end = new int[n];
+    for (int i = 0; i < n; i++) {
+      start[i] = functions[i].getAddress();
+    }
+    for (int i = 0; i < n; i++) {
+      int next = i + 1 < n ? start[i + 1] : Integer.MAX_VALUE;
+      int size = functions[i].getSize();
+      end[i] = size > 0 ? Math.min(start[i] + size, next) : next;
+    }
+  }
+
+  /** Returns the number of functions, one more than the highest ID. */
+  public int size() {
+    return functions.length;
+  }
+
+  /** Returns the function with the given ID. */
+  public MapEntry getFunction(int id) {
+    return functions[id];
+  }
+
+  /** Returns the start address of the function with the given ID. */
+  public int getAddress(int id) {
+    return start[id];
+  }
+
+  /**
+   * Returns the ID of the function containing the address, or -1 if the
+   * address is not inside any function.
+   */
+  public int getFunctionID(int address) {
+    int low = 0;
+    int high = start.length - 1;
+    while (low <= high) {
+      int mid = (low + high) >>> 1;
+      if (start[mid] <= address) {
+        low = mid + 1;
+      } else {
+        high = mid - 1;
+      }
+    }
+    return high >= 0 && address < end[high] ? high : -1;
+  }
+
+  /** Returns the function containing the address, or null if there is none. */
+  public MapEntry getFunctionAt(int address) {
+    int id = getFunctionID(address);
+    return id >= 0 ? functions[id] : null;
+  }
+}
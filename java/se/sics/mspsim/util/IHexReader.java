@@ -58,8 +58,8 @@ public class IHexReader {
    */
   private IHexReader() {}
 
-  public static int[] readFile(String file, int memSize) {
-    var memory = new int[memSize];
+  public static byte[] readFile(String file, int memSize) {
+    var memory = new byte[memSize];
     for (int i = 0, n = memory.length; i < n; i++) {
       memory[i] = -1;
     }
@@ -83,7 +83,7 @@ public class IHexReader {
         } else {
           int index = 9;
           for (int i = 0; i < size; i++) {
-            memory[adr + i] = (hexToInt(line.charAt(index++)) * 0x10 +
+            memory[adr + i] = (byte) (hexToInt(line.charAt(index++)) * 0x10 +
                                   hexToInt(line.charAt(index++)));
           }
         }
@@ -0,0 +1,218 @@
+/*
+ * Copyright (c) 2026, RISE Research Institutes of Sweden AB.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ * 3. Neither the name of the copyright holder nor the names of its
+ *    contributors may be used to endorse or promote products derived
+ *    from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDER AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+ * FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ * COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT,
+ * STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package se.sics.mspsim.util;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
+
+/**
+ * Reads instruction traces written by {@link InstructionTraceWriter}.
+ * <p>
+ * The block headers are scanned when the trace is opened, and blocks are
+ * memory mapped and decoded when they are read. A block that was only
+ * partly written, for example when the simulation crashed, ends the trace.
+ */
+public class InstructionTraceReader implements Closeable {
+
+  private final FileChannel channel;
+  private final long[] blockOffset;
+  private final int[] blockLength;
+  /* index of the first address in each block, and the total count last */
+  private final long[] blockStart;
+  /* the block last decoded by get() */
+  private int cachedBlock = -1;
+  private int[] cachedAddresses;
+
+  public InstructionTraceReader(Path file) throws IOException {
+    channel = FileChannel.open(file, StandardOpenOption.READ);
+    try {
+      long size = channel.size();
+      ByteBuffer header = read(0, InstructionTraceWriter.HEADER_SIZE);
+      if (header.remaining() < InstructionTraceWriter.HEADER_SIZE
+          || header.getLong() != InstructionTraceWriter.MAGIC) {
+        throw new IOException("Not an instruction trace: " + file);
+      }
+      int version = header.getInt();
+      if (version != InstructionTraceWriter.VERSION) {
+        throw new IOException("Unsupported instruction trace version " + version + ": " + file);
+      }
+
+      int blocks = 0;
+      long[] offsets = new long[64];
+      int[] lengths = new int[64];
+      long[] starts = new long[65];
+      long position = InstructionTraceWriter.HEADER_SIZE;
+      while (position + InstructionTraceWriter.BLOCK_HEADER_SIZE <= size) {
+        ByteBuffer blockHeader = read(position, InstructionTraceWriter.BLOCK_HEADER_SIZE);
+        int length = blockHeader.getInt();
+        int count = blockHeader.getInt();
+        position += InstructionTraceWriter.BLOCK_HEADER_SIZE;
+        if (length < 0 || count < 0 || position + length > size) {
+          break;
+        }
+        if (blocks == offsets.length) {
+          offsets = Arrays.copyOf(offsets, blocks * 2);
+          lengths = Arrays.copyOf(lengths, blocks * 2);
+          starts = Arrays.copyOf(starts, blocks * 2 + 1);
+        }
+        offsets[blocks] = position;
+        lengths[blocks] = length;
+        starts[blocks + 1] = starts[blocks] + count;
+        blocks++;
+        position += length;
+      }
+      blockOffset = Arrays.copyOf(offsets, blocks);
+      blockLength = Arrays.copyOf(lengths, blocks);
+      blockStart = Arrays.copyOf(starts, blocks + 1);
+    } catch (IOException e) {
+      channel.close();
+      throw e;
+    }
+  }
+
+  private ByteBuffer read(long position, int length) throws IOException {
+    ByteBuffer buffer = ByteBuffer.allocate(length).order(ByteOrder.LITTLE_ENDIAN);
+    while (buffer.hasRemaining() && channel.read(buffer, position + buffer.position()) >= 0) {
+      // Keep reading until the buffer is full or the end of the file.
+    }
+    return buffer.flip();
+  }
+
+  /** Returns the number of instruction addresses in the trace. */
+  public long size() {
+    return blockStart[blockStart.length - 1];
+  }
+
+  public int getBlockCount() {
+    return blockOffset.length;
+  }
+
+  /** Returns the index in the trace of the first address in the block. */
+  public long getBlockStart(int block) {
+    return blockStart[block];
+  }
+
+  /** Decodes all instruction addresses in a block. */
+  public int[] readBlock(int block) throws IOException {
+    ByteBuffer data = channel.map(FileChannel.MapMode.READ_ONLY, blockOffset[block], blockLength[block]);
+    int[] addresses = new int[(int) (blockStart[block + 1] - blockStart[block])];
+    int address = 0;
+    for (int i = 0; i < addresses.length; i++) {
+      int value = 0;
+      int shift = 0;
+      byte b;
+      do {
+        b = data.get();
+        value |= (b & 0x7f) << shift;
+        shift += 7;
+      } while (b < 0);
+      address += (value >>> 1) ^ -(value & 1);
+      addresses[i] = address;
+    }
+    return addresses;
+  }
+
+  /**
+   * Returns the instruction address at the index in the trace. The last
+   * decoded block is kept, so each block is decoded once when reading in order.
+   */
+  public int get(long index) throws IOException {
+    if (index < 0 || index >= size()) {
+      throw new IndexOutOfBoundsException("index " + index + " not in trace of size " + size());
+    }
+    int block = cachedBlock;
+    if (block < 0 || index < blockStart[block] || index >= blockStart[block + 1]) {
+      block = Arrays.binarySearch(blockStart, index);
+      if (block < 0) {
+        block = -block - 2;
+      } else {
+        /* skip empty blocks */
+        while (blockStart[block + 1] == index) {
+          block++;
+        }
+      }
+      cachedAddresses = readBlock(block);
+      cachedBlock = block;
+    }
+    return cachedAddresses[(int) (index - blockStart[block])];
+  }
+
+  /**
+   * Returns an iterator over all instruction addresses in the trace. The
+   * iterator throws an UncheckedIOException if a block can not be read.
+   */
+  public PrimitiveIterator.OfInt iterator() {
+    return new PrimitiveIterator.OfInt() {
+      private int block;
+      private int[] addresses = new int[0];
+      private int pos;
+
+      @Override
+      public boolean hasNext() {
+        while (pos == addresses.length) {
+          if (block == blockOffset.length) {
+            return false;
+          }
+          try {
+            addresses = readBlock(block++);
+          } catch (IOException e) {
+            throw new UncheckedIOException(e);
+          }
+          pos = 0;
+        }
+        return true;
+      }
+
+      @Override
+      public int nextInt() {
+        if (!hasNext()) {
+          throw new NoSuchElementException();
+        }
+        return addresses[pos++];
+      }
+    };
+  }
+
+  @Override
+  public void close() throws IOException {
+    channel.close();
+  }
+
+}
@@ -0,0 +1,214 @@
+/*
+ * Copyright (c) 2026, RISE Research Institutes of Sweden AB.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ * 3. Neither the name of the copyright holder nor the names of its
+ *    contributors may be used to endorse or promote products derived
+ *    from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDER AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+ * FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ * COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT,
+ * STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package se.sics.mspsim.util;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ArrayBlockingQueue;
+
+/**
+ * Streams the addresses of executed instructions to a file.
+ * <p>
+ * The trace file starts with a 16 byte header followed by blocks of
+ * instruction addresses. Each block has a 4 byte length and a 4 byte
+ * address count, followed by the zigzag varint encoded difference of each
+ * address from the previous one in the block. Blocks are filled in large
+ * direct buffers and written by a background thread, so the emulation
+ * thread only encodes a few bytes per instruction.
+ *
+ * @see InstructionTraceReader
+ */
+public class InstructionTraceWriter implements Closeable {
+
+  static final long MAGIC = 0x4d53505452414345L; /* "MSPTRACE" */
+  static final int VERSION = 1;
+  static final int HEADER_SIZE = 16;
+  static final int BLOCK_HEADER_SIZE = 8;
+
+  private static final int BUFFER_SIZE = 1 << 20;
+  private static final int BUFFER_COUNT = 4;
+  private static final int MAX_VARINT_SIZE = 5;
+  private static final ByteBuffer END = ByteBuffer.allocate(0);
+
+  private final FileChannel channel;
+  private final ArrayBlockingQueue<ByteBuffer> freeBuffers = new ArrayBlockingQueue<>(BUFFER_COUNT);
+  private final ArrayBlockingQueue<ByteBuffer> fullBuffers = new ArrayBlockingQueue<>(BUFFER_COUNT + 1);
+  private final Thread writerThread;
+  private ByteBuffer buffer;
+  private int count;
+  private int lastAddress;
+  private long totalCount;
+  private volatile boolean closed;
+  private volatile IOException error;
+
+  public InstructionTraceWriter(Path file) throws IOException {
+    channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+        StandardOpenOption.TRUNCATE_EXISTING);
+    ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+    header.putLong(MAGIC).putInt(VERSION).putInt(0).flip();
+    while (header.hasRemaining()) {
+      channel.write(header);
+    }
+    for (int i = 1; i < BUFFER_COUNT; i++) {
+      freeBuffers.add(ByteBuffer.allocateDirect(BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN));
+    }
+    buffer = ByteBuffer.allocateDirect(BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+    buffer.position(BLOCK_HEADER_SIZE);
+    writerThread = new Thread(this::writeBlocks, "InstructionTraceWriter " + file.getFileName());
+    writerThread.setDaemon(true);
+    writerThread.start();
+  }
+
+  /** Adds the address of an executed instruction to the trace. */
+  public void add(int address) {
+    int delta = address - lastAddress;
+    int value = (delta << 1) ^ (delta >> 31);
+    lastAddress = address;
+    ByteBuffer buffer = this.buffer;
+    while ((value & ~0x7f) != 0) {
+      buffer.put((byte) ((value & 0x7f) | 0x80));
+      value >>>= 7;
+    }
+    buffer.put((byte) value);
+    count++;
+    if (buffer.remaining() < MAX_VARINT_SIZE) {
+      flush();
+    }
+  }
+
+  /** Returns the number of addresses added to the trace. */
+  public long getCount() {
+    return totalCount + count;
+  }
+
+  /** Returns the error that stopped the trace from being written, if any. */
+  public IOException getError() {
+    return error;
+  }
+
+  /** Hands the current block to the writer thread. */
+  public void flush() {
+    if (count == 0 || closed) {
+      return;
+    }
+    buffer.putInt(0, buffer.position() - BLOCK_HEADER_SIZE);
+    buffer.putInt(4, count);
+    buffer.flip();
+    put(fullBuffers, buffer);
+    totalCount += count;
+    count = 0;
+    lastAddress = 0;
+    buffer = take(freeBuffers);
+    buffer.clear();
+    buffer.position(BLOCK_HEADER_SIZE);
+  }
+
+  private void writeBlocks() {
+    ByteBuffer block;
+    while ((block = take(fullBuffers)) != END) {
+      if (error == null) {
+        try {
+          while (block.hasRemaining()) {
+            channel.write(block);
+          }
+        } catch (IOException e) {
+          error = e;
+        }
+      }
+      put(freeBuffers, block);
+    }
+  }
+
+  /** Writes the remaining trace and closes the file. */
+  @Override
+  public void close() throws IOException {
+    if (closed) {
+      return;
+    }
+    flush();
+    closed = true;
+    put(fullBuffers, END);
+    boolean interrupted = false;
+    while (writerThread.isAlive()) {
+      try {
+        writerThread.join();
+      } catch (InterruptedException e) {
+        interrupted = true;
+      }
+    }
+    if (interrupted) {
+      Thread.currentThread().interrupt();
+    }
+    channel.close();
+    if (error != null) {
+      throw error;
+    }
+  }
+
+  /* the queues are bounded, waits are not interruptible to avoid losing blocks */
+  private static <T> void put(ArrayBlockingQueue<T> queue, T element) {
+    boolean interrupted = false;
+    while (true) {
+      try {
+        queue.put(element);
+        break;
+      } catch (InterruptedException e) {
+        interrupted = true;
+      }
+    }
+    if (interrupted) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  private static <T> T take(ArrayBlockingQueue<T> queue) {
+    boolean interrupted = false;
+    try {
+      while (true) {
+        try {
+          return queue.take();
+        } catch (InterruptedException e) {
+          interrupted = true;
+        }
+      }
+    } finally {
+      if (interrupted) {
+        Thread.currentThread().interrupt();
+      }
+    }
+  }
+
+}
@@ -57,6 +57,11 @@ import java.util.regex.Pattern;
  * WS Adress WS function_name
  * WS Adress WS function_name
  * ...
+ * <p>
+ * A map loaded from an ELF file is shared by all nodes running the firmware
+ * and should only be modified while loading. Entries added later invalidate
+ * the function index, so users of {@link #getFunctionIndex()} must fetch it
+ * again to see them.
  */
 public class MapTable {
 
@@ -73,6 +78,7 @@ public class MapTable {
   private final ArrayList<MapEntry> modules = new ArrayList<>();
   private final ArrayList<MapEntry> entries = new ArrayList<>();
   private final HashMap<Integer, MapEntry> addressMap = new HashMap<>();
+  private FunctionIndex functionIndex;
 
   public MapTable() {
   }
@@ -212,6 +218,18 @@ public class MapTable {
       return addressMap.get(address);
   }
 
+  /**
+   * Returns the index of all functions for looking up the function that
+   * contains an address. The index is rebuilt if functions are added.
+   */
+  public synchronized FunctionIndex getFunctionIndex() {
+    FunctionIndex index = functionIndex;
+    if (index == null) {
+      index = functionIndex = new FunctionIndex(getAllEntries());
+    }
+    return index;
+  }
+
   public MapEntry[] getAllEntries() {
     return entries.toArray(new MapEntry[0]);
   }
@@ -232,9 +250,12 @@ public class MapTable {
     setEntry(new MapEntry(MapEntry.TYPE.function, address, 0, name, null, false));
   }
 
-  public void setEntry(MapEntry entry) {
+  public synchronized void setEntry(MapEntry entry) {
     entries.add(entry);
     addressMap.put(entry.getAddress(), entry);
+    if (entry.getType() == MapEntry.TYPE.function) {
+      functionIndex = null;
+    }
   }
 
   // Really slow way to find a specific function address!!!!
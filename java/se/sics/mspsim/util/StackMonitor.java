@@ -53,12 +53,13 @@ public class StackMonitor {
   };
 
   public StackMonitor(MSP430 cpu) {
-    SimpleProfiler profiler = cpu.getRegistry().getComponent(SimpleProfiler.class);
-    if (profiler != null) {
+    if (cpu.getProfiler() instanceof SimpleProfiler profiler) {
         profiler.setStackMonitor(this);
         System.out.println("Found simple profiler!!!: " + profiler);
     } else {
-        System.out.println("Could not find any suitable profiler");
+        /* Only the simple profiler records stack usage per function */
+        System.out.println("Warning: no simple profiler found, stack usage is not profiled per function."
+            + " Use 'profiler simple' to enable it.");
     }
     if (cpu.getDisAsm() != null) {
       MapTable mapTable = cpu.getDisAsm().getMap();
@@ -0,0 +1,158 @@
+/*
+ * Copyright (c) 2026, Research Institutes of Sweden. All rights
+ * reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 1. Redistributions of source code must retain the above copyright notice,
+ * this list of conditions and the following disclaimer. 2. Redistributions in
+ * binary form must reproduce the above copyright notice, this list of
+ * conditions and the following disclaimer in the documentation and/or other
+ * materials provided with the distribution. 3. Neither the name of the
+ * Institute nor the names of its contributors may be used to endorse or promote
+ * products derived from this software without specific prior written
+ * permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE INSTITUTE AND CONTRIBUTORS ``AS IS'' AND ANY
+ * EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE INSTITUTE OR CONTRIBUTORS BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.contikios.cooja;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.SplittableRandom;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Compares the event queue implementations on a synthetic workload that
+ * resembles a network of motes: every mote has a wakeup event that is
+ * rescheduled a few microseconds to milliseconds ahead, wakeups are sometimes
+ * moved earlier, and some wakeups start a transmission that schedules
+ * deliveries to neighboring motes.
+ * <p>
+ * Run with: ./gradlew benchmark
+ */
+class EventQueueBenchmark {
+  private static final String[] QUEUES = { "heap", "calendar" };
+  private static final int[] MOTES = { 100, 1000, 10000 };
+  private static final int EVENTS = 4_000_000;
+  private static final int ROUNDS = 3;
+
+  @Test
+  void benchmark() {
+    for (int motes : MOTES) {
+      long expectedChecksum = 0;
+      for (var type : QUEUES) {
+        long best = Long.MAX_VALUE;
+        long checksum = 0;
+        for (int round = 0; round < ROUNDS; round++) {
+          var workload = new Workload(EventQueue.create(type), motes);
+          long start = System.nanoTime();
+          checksum = workload.run(EVENTS);
+          best = Math.min(best, System.nanoTime() - start);
+        }
+        if (type.equals(QUEUES[0])) {
+          expectedChecksum = checksum;
+        }
+        // The execution order must be identical for all implementations.
+        assertEquals(expectedChecksum, checksum, type + " executed events in a different order");
+        System.out.printf("%-8s %6d motes: %6.1f ns/event%n", type, motes, (double) best / EVENTS);
+      }
+    }
+  }
+
+  private static final class Workload {
+    private final EventQueue queue;
+    private final SplittableRandom random = new SplittableRandom(123456);
+    private final WakeupEvent[] wakeups;
+    private final DeliveryEvent[] deliveries;
+    private long now;
+    private long checksum;
+
+    Workload(EventQueue queue, int motes) {
+      this.queue = queue;
+      wakeups = new WakeupEvent[motes];
+      deliveries = new DeliveryEvent[motes];
+      for (int i = 0; i < motes; i++) {
+        wakeups[i] = new WakeupEvent(i);
+        deliveries[i] = new DeliveryEvent(i);
+        queue.addEvent(wakeups[i], random.nextLong(1000));
+      }
+    }
+
+    long run(int events) {
+      for (int i = 0; i < events; i++) {
+        var event = queue.popFirst();
+        now = queue.getLastTime();
+        event.execute(now);
+      }
+      return checksum;
+    }
+
+    private void executed(int id) {
+      checksum = checksum * 31 + now * 1000003 + id;
+    }
+
+    private void wakeup(int id, long time) {
+      var event = wakeups[id];
+      if (event.isScheduled()) {
+        event.remove();
+      }
+      queue.addEvent(event, time);
+    }
+
+    private final class WakeupEvent extends TimeEvent {
+      private final int id;
+
+      WakeupEvent(int id) {
+        this.id = id;
+      }
+
+      @Override
+      public void execute(long t) {
+        executed(id);
+        int action = random.nextInt(100);
+        if (action < 5) {
+          // Transmission: deliver to a few neighbors after the packet duration.
+          for (int i = 0; i < 4; i++) {
+            var delivery = deliveries[random.nextInt(deliveries.length)];
+            if (!delivery.isScheduled()) {
+              queue.addEvent(delivery, t + 4000);
+            }
+          }
+        } else if (action < 10) {
+          // Move the wakeup of another mote earlier.
+          wakeup(random.nextInt(wakeups.length), t + random.nextLong(1, 100));
+        }
+        if (!isScheduled()) {
+          // Mostly near-future wakeups, with an occasional long sleep.
+          long delay = random.nextInt(50) == 0 ? random.nextLong(100_000) : random.nextLong(1, 2000);
+          queue.addEvent(this, t + delay);
+        }
+      }
+    }
+
+    private final class DeliveryEvent extends TimeEvent {
+      private final int id;
+
+      DeliveryEvent(int id) {
+        this.id = id;
+      }
+
+      @Override
+      public void execute(long t) {
+        executed(-id - 1);
+        wakeup(id, t + 1);
+      }
+    }
+  }
+}
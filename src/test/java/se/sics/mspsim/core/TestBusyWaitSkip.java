@@ -0,0 +1,242 @@
+/*
+ * Copyright (c) 2026, Research Institutes of Sweden. All rights
+ * reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 1. Redistributions of source code must retain the above copyright notice,
+ * this list of conditions and the following disclaimer. 2. Redistributions in
+ * binary form must reproduce the above copyright notice, this list of
+ * conditions and the following disclaimer in the documentation and/or other
+ * materials provided with the distribution. 3. Neither the name of the
+ * Institute nor the names of its contributors may be used to endorse or promote
+ * products derived from this software without specific prior written
+ * permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE INSTITUTE AND CONTRIBUTORS ``AS IS'' AND ANY
+ * EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE INSTITUTE OR CONTRIBUTORS BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package se.sics.mspsim.core;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayDeque;
+import java.util.PriorityQueue;
+import java.util.function.LongSupplier;
+import org.junit.jupiter.api.Test;
+import se.sics.mspsim.config.MSP430f1611Config;
+
+/**
+ * Runs a serial echo with busy-wait skipping on and off and checks that the
+ * CPU ends up in the same state. The serial input is scheduled by a script
+ * that answers every line the CPU prints.
+ * <p>
+ * Only MSP430.stepMicros and the busy-wait skipping are covered. The event
+ * queue and the stepping loop are small copies of what Simulation and
+ * MspMote.execute do, so changes to those classes are not tested here.
+ */
+class TestBusyWaitSkip {
+  /* Same as MspMote with the default MSPSIM_MAX_QUANTUM_US */
+  private static final long MAX_QUANTUM_US = 1000;
+  /* Same as MspSerial */
+  private static final long DELAY_INCOMING_DATA = 69;
+
+  /*
+   * Prints '\n' and spins in "jmp $". The USART1 receive interrupt adds the
+   * timer to a sum and prints the next '\n'. The DCO is set to its highest
+   * frequency so that the spin loop is detected within the step that printed.
+   */
+  private static final int[] PROGRAM = {
+      0x4031, 0x3900,         // mov #0x3900, sp
+      0x40b2, 0x5a80, 0x0120, // mov #WDTPW|WDTHOLD, &WDTCTL
+      0x40f2, 0x00ff, 0x0056, // mov.b #0xff, &DCOCTL
+      0x40f2, 0x0087, 0x0057, // mov.b #XT2OFF|RSEL2|RSEL1|RSEL0, &BCSCTL1
+      0xd0f2, 0x0030, 0x0005, // bis.b #UTXE1|URXE1, &ME2
+      0x40f2, 0x0010, 0x0078, // mov.b #CHAR, &U1CTL
+      0x40f2, 0x0020, 0x0079, // mov.b #SSEL1, &U1TCTL
+      0x40f2, 0x0010, 0x007c, // mov.b #0x10, &U1BR0
+      0xd0f2, 0x0010, 0x0001, // bis.b #URXIE1, &IE2
+      0x40b2, 0x0220, 0x0160, // mov #TASSEL_2|MC_2, &TACTL
+      0xd232,                 // eint
+      0x40f2, 0x000a, 0x007f, // mov.b #'\n', &U1TXBUF
+      0x3fff,                 // jmp $
+      // 0x4044: USART1 receive interrupt
+      0x5292, 0x0170, 0x1102, // add &TAR, &0x1102
+      0x42d2, 0x007e, 0x1100, // mov.b &U1RXBUF, &0x1100
+      0x40f2, 0x000a, 0x007f, // mov.b #'\n', &U1TXBUF
+      0x1300,                 // reti
+  };
+  private static final int PROGRAM_START = 0x4000;
+  private static final int RX_INTERRUPT = 0x4044;
+
+  private static final class Event implements Comparable<Event> {
+    private final Runnable action;
+    private long time;
+    private long order;
+    private boolean scheduled;
+
+    Event(Runnable action) {
+      this.action = action;
+    }
+
+    @Override
+    public int compareTo(Event other) {
+      return time != other.time ? Long.compare(time, other.time) : Long.compare(order, other.order);
+    }
+  }
+
+  /* A copy of the queue methods of Simulation that MspMote uses */
+  private static final class EventQueue {
+    private final PriorityQueue<Event> queue = new PriorityQueue<>();
+    private long time;
+    private long order;
+
+    void schedule(Event event, long t) {
+      if (event.scheduled) {
+        queue.remove(event);
+      }
+      event.time = t;
+      event.order = order++;
+      event.scheduled = true;
+      queue.add(event);
+    }
+
+    long getNextEventTime() {
+      return queue.isEmpty() ? Long.MAX_VALUE : queue.peek().time;
+    }
+
+    boolean advanceTime(long t) {
+      if (t < time || t >= getNextEventTime()) {
+        return false;
+      }
+      time = t;
+      return true;
+    }
+
+    void run(long endTime) {
+      while (!queue.isEmpty() && queue.peek().time < endTime) {
+        var event = queue.poll();
+        event.scheduled = false;
+        time = event.time;
+        event.action.run();
+      }
+    }
+  }
+
+  private record Result(String state, long skippedCycles, int received) {}
+
+  private static final class Mote {
+    private final EventQueue sim = new EventQueue();
+    private final MSP430 cpu;
+    private final USARTSource usart;
+    private final ArrayDeque<Integer> incoming = new ArrayDeque<>();
+    private final StringBuilder log = new StringBuilder();
+    private final Event executeEvent = new Event(this::execute);
+    private final Event writeDataEvent = new Event(this::writeData);
+    private long lastExecute = -1;
+    private long quietStart;
+    private long quietLimit;
+    private final LongSupplier quietMicros = () -> Math.min(quietLimit, sim.getNextEventTime()) - quietStart;
+    private int received;
+
+    Mote(boolean skip) {
+      var config = new MSP430f1611Config();
+      var memory = new byte[config.maxMem];
+      for (int i = 0; i < PROGRAM.length; i++) {
+        putWord(memory, PROGRAM_START + 2 * i, PROGRAM[i]);
+      }
+      putWord(memory, 0xffe6, RX_INTERRUPT);
+      putWord(memory, 0xfffe, PROGRAM_START);
+      cpu = new MSP430(config, memory, null);
+      cpu.setBusyWaitSkip(skip);
+      cpu.reset();
+      usart = cpu.getIOUnit(USARTSource.class, "USART 1");
+      usart.addUSARTListener((source, data) -> {
+        log.append(sim.time).append(' ').append(data).append('\n');
+        if (data == '\n') {
+          // The script answers every line, like MspSerial.writeByte.
+          incoming.add((int) 'x');
+          if (!writeDataEvent.scheduled) {
+            sim.schedule(writeDataEvent, sim.time);
+          }
+        }
+      });
+      sim.schedule(executeEvent, 0);
+    }
+
+    private static void putWord(byte[] memory, int address, int word) {
+      memory[address] = (byte) word;
+      memory[address + 1] = (byte) (word >> 8);
+    }
+
+    private void writeData() {
+      if (!incoming.isEmpty() && usart.isReceiveFlagCleared()) {
+        usart.byteReceived(incoming.poll());
+        received++;
+        if (executeEvent.time > sim.time) {
+          sim.schedule(executeEvent, sim.time);
+        }
+      }
+      if (!incoming.isEmpty()) {
+        sim.schedule(writeDataEvent, sim.time + DELAY_INCOMING_DATA);
+      }
+    }
+
+    /* A copy of the stepping in MspMote.execute */
+    private void execute() {
+      long t = sim.time;
+      quietLimit = t + MAX_QUANTUM_US;
+      long nextExecute = step(t);
+      while (nextExecute < quietLimit && sim.advanceTime(nextExecute)) {
+        t = nextExecute;
+        nextExecute = step(t);
+      }
+      sim.schedule(executeEvent, nextExecute);
+    }
+
+    private long step(long t) {
+      long jump = lastExecute < 0 ? 0 : t - lastExecute;
+      lastExecute = t;
+      quietStart = t;
+      try {
+        return t + 1 + cpu.stepMicros(jump, 1, quietMicros);
+      } catch (EmulationException e) {
+        throw new IllegalStateException(e);
+      }
+    }
+
+    Result run(long endTime) {
+      sim.run(endTime);
+      var state = new StringBuilder(log);
+      state.append("cycles ").append(cpu.cycles).append('\n');
+      for (int r = 0; r < 16; r++) {
+        state.append("r").append(r).append(' ').append(cpu.reg[r]).append('\n');
+      }
+      for (int address = 0x1100; address < 0x1104; address++) {
+        state.append(address).append(' ').append(cpu.memory[address]).append('\n');
+      }
+      return new Result(state.toString(), cpu.getSkippedCycles(), received);
+    }
+  }
+
+  @Test
+  void testSerialEchoWithSkipping() {
+    var reference = new Mote(false).run(200000);
+    var skipped = new Mote(true).run(200000);
+    assertTrue(reference.received() > 1000);
+    assertEquals(0, reference.skippedCycles());
+    assertTrue(skipped.skippedCycles() > 0);
+    assertEquals(reference.received(), skipped.received());
+    assertEquals(reference.state(), skipped.state());
+  }
+}